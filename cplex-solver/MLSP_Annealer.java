@@ -0,0 +1,279 @@
+import java.util.*;
+
+/* This program implements a simulated annealing heuristic for the MLSP that works directly on the x[t][h] model of MLSP_Instance.
+ * Instead of flipping single binary variables (as the QUBO samplers do), a move swaps the HAPs of two teams in the same league, so 
+ * every state visited satisfies the first two constraints of the MILP. The number of home games of each club in each round is cached,
+ * such that the change in violations caused by a move follows from the cached counts without re-evaluating the whole schedule.
+ * The annealer works on the bit-packed model of the instance: the rounds affected by a swap are the set bits of the XOR of the two 
+ * HAP masks, and the home counts and capacities are flat arrays, so proposing and applying moves does not allocate.
+ */
+
+public class MLSP_Annealer {
+	
+	MLSP_Instance instance;
+	MLSP_BitModel model;
+	int numRounds;
+	int[] teamClub;				// The club each team belongs to, or -1 if the team belongs to no club
+	long[] hapMask;				// Bit r of hapMask[h] is set if HAP h plays at home in round r
+	int[] hap;					// The HAP assigned to each team, this is the x variable stored as team -> HAP
+	int[] homeCount;			// The number of home games of club c in round r at position c*numRounds + r
+	int[] capacity;				// The capacity of club c in round r at position c*numRounds + r
+	int violations;				// The total number of violations under the current assignment
+	
+	int[] bestHap;
+	int bestViolations;
+	
+	int[][] activeLeagues;		// The leagues in which swaps are proposed, all leagues unless restricted
+	int activeTeams;
+	
+	long movesEvaluated;
+	long movesAccepted;
+	
+	Random rd;
+	
+	/**
+	 * Creates an annealer for the given instance, starting from a random assignment of HAPs within every league
+	 **/
+	public MLSP_Annealer(MLSP_Instance instance, long seed) {
+		
+		this.instance = instance;
+		this.model = instance.getBitModel();
+		this.numRounds = instance.numRounds;
+		this.teamClub = this.model.teamClub;
+		this.hapMask = this.model.hapMask;
+		this.hap = new int[instance.numTeams];
+		this.homeCount = this.model.newHomeCounts();
+		this.capacity = new int[instance.numClubs * instance.numRounds];
+		for(int c = 0; c < instance.numClubs; c++) {
+			System.arraycopy(instance.roundCapacities[c], 0, this.capacity, c * instance.numRounds, instance.numRounds);
+		}
+		this.rd = new Random(seed);
+		this.activeLeagues = instance.leagues;
+		this.activeTeams = instance.numTeams;
+		
+		randomAssignment();
+	}
+	
+	/**
+	 * This method assigns the HAPs of every league to its teams according to a random permutation
+	 **/
+	public void randomAssignment() {
+		
+		int[] assignment = new int[this.instance.numTeams];
+		int[] perm = new int[this.instance.leagueSize];
+		for(int l = 0; l < this.instance.numLeagues; l++) {
+			for(int i = 0; i < perm.length; i++) {
+				perm[i] = i;
+			}
+			// Fisher-Yates shuffle of the HAPs of this league
+			for(int i = perm.length - 1; i > 0; i--) {
+				int j = this.rd.nextInt(i + 1);
+				int temp = perm[i];
+				perm[i] = perm[j];
+				perm[j] = temp;
+			}
+			for(int i = 0; i < this.instance.leagueSize; i++) {
+				assignment[this.instance.leagues[l][i]] = perm[i];
+			}
+		}
+		setAssignment(assignment);
+	}
+	
+	/**
+	 * This method sets the current assignment of teams to HAPs and recomputes the cached home counts from scratch. 
+	 * The assignment should be a permutation of the HAPs within every league.
+	 **/
+	public void setAssignment(int[] assignment) {
+		
+		System.arraycopy(assignment, 0, this.hap, 0, this.hap.length);
+		this.model.countHomeGames(this.hap, this.homeCount);
+		
+		this.violations = 0;
+		for(int k = 0; k < this.homeCount.length; k++) {
+			this.violations += Math.max(0, this.homeCount[k] - this.capacity[k]);
+		}
+		
+		this.bestHap = this.hap.clone();
+		this.bestViolations = this.violations;
+	}
+	
+	/**
+	 * This method restricts the swaps to the given leagues, such that the HAPs of all other teams stay fixed
+	 **/
+	public void restrictToLeagues(int[] leagueIds) {
+		
+		this.activeLeagues = new int[leagueIds.length][];
+		for(int i = 0; i < leagueIds.length; i++) {
+			this.activeLeagues[i] = this.instance.leagues[leagueIds[i]];
+		}
+		this.activeTeams = leagueIds.length * this.instance.leagueSize;
+	}
+	
+	/**
+	 * This method returns the change in the total number of violations if teams a and b (of the same league) swap their HAPs.
+	 * Only the rounds in which the two HAPs differ, and only the two clubs of the teams, are affected by such a swap. In the rounds 
+	 * where HAP b plays at home club ca gains a home game and club cb loses one, in the rounds where HAP a plays at home it is the 
+	 * other way around.
+	 **/
+	int swapDelta(int a, int b) {
+		
+		int ca = this.teamClub[a];
+		int cb = this.teamClub[b];
+		int ha = this.hap[a];
+		int hb = this.hap[b];
+		if(ca == cb || ha == hb) {
+			return 0;
+		}
+		
+		long diff = this.hapMask[ha] ^ this.hapMask[hb];
+		long gainedByA = diff & this.hapMask[hb];
+		long gainedByB = diff & this.hapMask[ha];
+		int delta = 0;
+		if(ca >= 0) {
+			delta += changeOnGain(ca * this.numRounds, gainedByA) + changeOnLoss(ca * this.numRounds, gainedByB);
+		}
+		if(cb >= 0) {
+			delta += changeOnGain(cb * this.numRounds, gainedByB) + changeOnLoss(cb * this.numRounds, gainedByA);
+		}
+		return delta;
+	}
+	
+	/**
+	 * Returns the change in violations of the club whose counts start at position base when it gains a home game in the given rounds
+	 **/
+	int changeOnGain(int base, long rounds) {
+		
+		int change = 0;
+		for(; rounds != 0; rounds &= rounds - 1) {
+			int k = base + Long.numberOfTrailingZeros(rounds);
+			if(this.homeCount[k] >= this.capacity[k]) {
+				change++;
+			}
+		}
+		return change;
+	}
+	
+	/**
+	 * Returns the change in violations of the club whose counts start at position base when it loses a home game in the given rounds
+	 **/
+	int changeOnLoss(int base, long rounds) {
+		
+		int change = 0;
+		for(; rounds != 0; rounds &= rounds - 1) {
+			int k = base + Long.numberOfTrailingZeros(rounds);
+			if(this.homeCount[k] > this.capacity[k]) {
+				change--;
+			}
+		}
+		return change;
+	}
+	
+	/**
+	 * This method swaps the HAPs of teams a and b and updates the cached home counts and violations
+	 **/
+	void applySwap(int a, int b, int delta) {
+		
+		int ca = this.teamClub[a];
+		int cb = this.teamClub[b];
+		int ha = this.hap[a];
+		int hb = this.hap[b];
+		this.hap[a] = hb;
+		this.hap[b] = ha;
+		this.violations += delta;
+		if(ca == cb) {
+			return;
+		}
+		
+		long diff = this.hapMask[ha] ^ this.hapMask[hb];
+		if(ca >= 0) {
+			addHomeGames(ca * this.numRounds, diff & this.hapMask[hb], diff & this.hapMask[ha]);
+		}
+		if(cb >= 0) {
+			addHomeGames(cb * this.numRounds, diff & this.hapMask[ha], diff & this.hapMask[hb]);
+		}
+	}
+	
+	/**
+	 * Adds a home game to the counts starting at position base in the gained rounds and removes one in the lost rounds
+	 **/
+	void addHomeGames(int base, long gained, long lost) {
+		
+		for(; gained != 0; gained &= gained - 1) {
+			this.homeCount[base + Long.numberOfTrailingZeros(gained)]++;
+		}
+		for(; lost != 0; lost &= lost - 1) {
+			this.homeCount[base + Long.numberOfTrailingZeros(lost)]--;
+		}
+	}
+	
+	/**
+	 * This method performs one sweep at a fixed temperature, which consists of (number of active teams) proposed swaps within random 
+	 * active leagues.
+	 * A swap is accepted according to the Metropolis criterion.
+	 **/
+	public void sweep(double temperature) {
+		
+		int leagueSize = this.instance.leagueSize;
+		int[][] leagues = this.activeLeagues;
+		if(leagues.length == 0) {
+			return;
+		}
+		for(int m = 0; m < this.activeTeams; m++) {
+			int[] league = leagues[this.rd.nextInt(leagues.length)];
+			int i = this.rd.nextInt(leagueSize);
+			int j = this.rd.nextInt(leagueSize - 1);
+			if(j >= i) {
+				j++;
+			}
+			int a = league[i];
+			int b = league[j];
+			int delta = swapDelta(a, b);
+			this.movesEvaluated++;
+			if(delta <= 0 || this.rd.nextDouble() < Math.exp(-delta / temperature)) {
+				applySwap(a, b, delta);
+				this.movesAccepted++;
+			}
+		}
+		
+		if(this.violations < this.bestViolations) {
+			this.bestViolations = this.violations;
+			System.arraycopy(this.hap, 0, this.bestHap, 0, this.hap.length);
+		}
+	}
+	
+	/**
+	 * This method anneals from temperature tStart to tEnd using a geometric schedule over the given number of sweeps, and
+	 * returns the lowest number of violations found. The search stops early if a schedule without violations is found.
+	 **/
+	public int anneal(int numSweeps, double tStart, double tEnd) {
+		
+		double factor = numSweeps > 1 ? Math.pow(tEnd / tStart, 1.0 / (numSweeps - 1)) : 1;
+		double temperature = tStart;
+		for(int s = 0; s < numSweeps && this.bestViolations > 0; s++) {
+			sweep(temperature);
+			temperature *= factor;
+		}
+		return this.bestViolations;
+	}
+	
+	/**
+	 * Returns the number of violations of the current assignment
+	 **/
+	public int getViolations() {
+		return this.violations;
+	}
+	
+	/**
+	 * Returns the lowest number of violations found so far
+	 **/
+	public int getBestViolations() {
+		return this.bestViolations;
+	}
+	
+	/**
+	 * Returns the best assignment of teams to HAPs found so far
+	 **/
+	public int[] getBestAssignment() {
+		return this.bestHap.clone();
+	}
+}
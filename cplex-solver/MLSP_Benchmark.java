@@ -0,0 +1,269 @@
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/* This program runs a solver over all instances in the data folder (or the instances matching a glob pattern), and writes one row 
+ * per run with the dimensions of the instance, the number of violations, the wall-clock time in nanoseconds and the peak heap usage.
+ * Every instance is first solved a number of times without recording the result, such that the timed runs are not affected by 
+ * class loading and JIT compilation. The program is not interactive, the options are given as arguments:
+ * 
+ *   java MLSP_Benchmark <solver> [--files <glob>] [--warmup <n>] [--runs <n>] [--parallel <n>] [--seed <n>] [--out <file.csv|file.json>]
+ *                       [--metrics <file.json>] [--store <file>]
+ * 
+ * With --metrics, the contents of MLSP_Metrics (phase timings, counters and gauges) are written after every timed run, as a JSON 
+ * array with one object per run. The registry is cleared before every run, and the time to parse the instance is added to it.
+ * With --store, the solution of every timed run is appended to the given MLSP_ResultStore, under the instance, solver and seed.
+ * With --parallel larger than 1, several instances are solved at the same time. The peak heap and the metrics are measured for the 
+ * whole JVM, so in that case they include the other runs that were active at the same time.
+ */
+
+public class MLSP_Benchmark {
+	
+	String solverName;
+	String glob = "*.txt";
+	int warmup = 1;
+	int runs = 5;
+	int parallel = 1;
+	long seed = 0;
+	String out = null;
+	String metrics = null;
+	String store = null;
+	
+	Writer writer;
+	Writer metricsWriter;
+	MLSP_ResultStore resultStore;
+	boolean firstMetrics = true;
+	boolean json;
+	boolean firstRow = true;
+	
+	public static void main(String args[]) {
+		
+		if(args.length == 0) {
+			System.out.println("Usage: java MLSP_Benchmark <solver> [--files <glob>] [--warmup <n>] [--runs <n>] [--parallel <n>] [--seed <n>] [--out <file>] [--metrics <file>] [--store <file>]");
+			return;
+		}
+		
+		MLSP_Benchmark benchmark = new MLSP_Benchmark();
+		benchmark.solverName = args[0];
+		for(int i = 1; i + 1 < args.length; i += 2) {
+			switch(args[i]) {
+			case "--files":
+				benchmark.glob = args[i + 1];
+				break;
+			case "--warmup":
+				benchmark.warmup = Integer.parseInt(args[i + 1]);
+				break;
+			case "--runs":
+				benchmark.runs = Integer.parseInt(args[i + 1]);
+				break;
+			case "--parallel":
+				benchmark.parallel = Integer.parseInt(args[i + 1]);
+				break;
+			case "--seed":
+				benchmark.seed = Long.parseLong(args[i + 1]);
+				break;
+			case "--out":
+				benchmark.out = args[i + 1];
+				break;
+			case "--metrics":
+				benchmark.metrics = args[i + 1];
+				break;
+			case "--store":
+				benchmark.store = args[i + 1];
+				break;
+			default:
+				System.out.println("Unknown option: " + args[i]);
+				return;
+			}
+		}
+		
+		try {
+			benchmark.run();
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Returns the instances in the data folder whose name matches the glob pattern, in alphabetical order. Only files named as
+	 * instances of the Data Generator are returned, such that solution files in the data folder are skipped.
+	 **/
+	static List<String> findInstances(String glob) {
+		
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		String[] names = new File("../data").list((dir, name) -> MLSP_Instance.isInstanceName(name) && matcher.matches(Paths.get(name)));
+		if(names == null) {
+			return new ArrayList<String>();
+		}
+		Arrays.sort(names);
+		return Arrays.asList(names);
+	}
+	
+	/**
+	 * This method runs the benchmark over all matching instances and writes the results
+	 **/
+	void run() throws IOException, InterruptedException {
+		
+		List<String> instances = findInstances(this.glob);
+		if(instances.isEmpty()) {
+			System.out.println("No instances in ../data match " + this.glob);
+			return;
+		}
+		
+		this.json = this.out != null && this.out.endsWith(".json");
+		this.writer = this.out == null ? new OutputStreamWriter(System.out) : new BufferedWriter(new FileWriter(this.out));
+		if(this.json) {
+			this.writer.write("[");
+		}
+		else {
+			this.writer.write("instance,numTeams,numLeagues,numClubs,leagueSize,solver,run,seed,violations,wallNanos,peakHeapBytes\n");
+		}
+		this.writer.flush();
+		if(this.metrics != null) {
+			this.metricsWriter = new BufferedWriter(new FileWriter(this.metrics));
+			this.metricsWriter.write("[");
+		}
+		if(this.store != null) {
+			this.resultStore = MLSP_ResultStore.open(new File(this.store), true);
+		}
+		
+		ExecutorService pool = Executors.newFixedThreadPool(this.parallel);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for(String filename : instances) {
+			results.add(pool.submit(() -> {
+				benchmarkInstance(filename);
+				return null;
+			}));
+		}
+		for(Future<Object> result : results) {
+			try {
+				result.get();
+			}
+			catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+			}
+		}
+		pool.shutdown();
+		
+		if(this.json) {
+			this.writer.write("\n]\n");
+		}
+		this.writer.flush();
+		if(this.out != null) {
+			this.writer.close();
+		}
+		if(this.metrics != null) {
+			this.metricsWriter.write("\n]\n");
+			this.metricsWriter.close();
+		}
+		if(this.resultStore != null) {
+			this.resultStore.close();
+		}
+	}
+	
+	/**
+	 * This method performs the warm-up runs and the timed runs of the solver on one instance
+	 **/
+	void benchmarkInstance(String filename) throws IOException {
+		
+		MLSP_Instance instance = MLSP_Instance.load(filename);
+		
+		for(int w = 0; w < this.warmup; w++) {
+			MLSP_Solver.byName(this.solverName, this.seed + w).solve(instance);
+		}
+		
+		// The instance is read again after the warm-up runs, such that the parse time does not include class loading
+		long parseStart = System.nanoTime();
+		instance = MLSP_Instance.load(filename);
+		long parseNanos = System.nanoTime() - parseStart;
+		
+		for(int run = 0; run < this.runs; run++) {
+			long runSeed = this.seed + run;
+			MLSP_Solver solver = MLSP_Solver.byName(this.solverName, runSeed);
+			
+			if(this.parallel == 1) {
+				System.gc();
+			}
+			if(this.metrics != null) {
+				MLSP_Metrics.reset();
+				MLSP_Metrics.record("parse", parseNanos);
+			}
+			resetPeakHeap();
+			long start = System.nanoTime();
+			solver.solve(instance);
+			long wallNanos = System.nanoTime() - start;
+			long peakHeap = peakHeap();
+			
+			writeRow(filename, instance, solver.getName(), run, runSeed, instance.numViolations, wallNanos, peakHeap);
+			if(this.metrics != null) {
+				writeMetrics(filename, instance, solver.getName(), run);
+			}
+			if(this.resultStore != null) {
+				this.resultStore.append(filename, instance, solver.getName(), runSeed, wallNanos);
+			}
+		}
+	}
+	
+	/**
+	 * Resets the peak usage of all heap memory pools
+	 **/
+	static void resetPeakHeap() {
+		
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the sum of the peak usage of all heap memory pools since the last reset
+	 **/
+	static long peakHeap() {
+		
+		long peak = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+	
+	/**
+	 * Writes the result of one run as a CSV row or JSON object
+	 **/
+	synchronized void writeRow(String filename, MLSP_Instance instance, String solver, int run, long seed, double violations, long wallNanos, long peakHeap) throws IOException {
+		
+		if(this.json) {
+			this.writer.write((this.firstRow ? "\n" : ",\n") + "{\"instance\": \"" + filename + "\", \"numTeams\": " + instance.numTeams
+					+ ", \"numLeagues\": " + instance.numLeagues + ", \"numClubs\": " + instance.numClubs + ", \"leagueSize\": " + instance.leagueSize
+					+ ", \"solver\": \"" + solver + "\", \"run\": " + run + ", \"seed\": " + seed + ", \"violations\": " + violations
+					+ ", \"wallNanos\": " + wallNanos + ", \"peakHeapBytes\": " + peakHeap + "}");
+		}
+		else {
+			this.writer.write(filename + "," + instance.numTeams + "," + instance.numLeagues + "," + instance.numClubs + "," + instance.leagueSize
+					+ "," + solver + "," + run + "," + seed + "," + violations + "," + wallNanos + "," + peakHeap + "\n");
+		}
+		this.firstRow = false;
+		this.writer.flush();
+	}
+	
+	/**
+	 * Writes the metrics of one run as JSON object
+	 **/
+	synchronized void writeMetrics(String filename, MLSP_Instance instance, String solver, int run) throws IOException {
+		
+		this.metricsWriter.write((this.firstMetrics ? "\n" : ",\n") + "{\"instance\": \"" + filename + "\", \"numTeams\": " + instance.numTeams
+				+ ", \"numLeagues\": " + instance.numLeagues + ", \"numClubs\": " + instance.numClubs + ", \"leagueSize\": " + instance.leagueSize
+				+ ", \"solver\": \"" + solver + "\", \"run\": " + run + ", \"metrics\": " + MLSP_Metrics.toJson() + "}");
+		this.firstMetrics = false;
+		this.metricsWriter.flush();
+	}
+}
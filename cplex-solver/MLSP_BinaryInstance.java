@@ -0,0 +1,257 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/* This program stores MLSP instances in a compact binary format and reads them back by memory-mapping the file. All values are 
+ * little-endian 32-bit integers, in the following order:
+ * - Header: magic number, format version, number of teams, number of leagues, number of clubs, league size, number of rounds
+ * - Club offsets: (number of clubs + 1) values, the teams of club c are stored from clubOffsets[c] up to clubOffsets[c + 1]
+ * - Club teams: the teams of all clubs after each other (numbered from 0 to numTeams - 1)
+ * - Club capacities: one value per club
+ * - Leagues: (number of leagues)*(league size) values, league by league
+ * - Parameter U: (league size)*(number of rounds) values, HAP by HAP
+ * - Round capacities: (number of clubs)*(number of rounds) values, club by club (only from format version 2 onwards)
+ * The arrays are exposed as IntBuffer views on the mapped file, so they are not copied into the Java heap.
+ */
+
+public class MLSP_BinaryInstance {
+	
+	static final int MAGIC = 0x4D4C5350;		// "MLSP"
+	static final int VERSION = 2;
+	static final int HEADER_INTS = 7;
+	
+	int numTeams;
+	int numLeagues;
+	int numClubs;
+	int leagueSize;
+	int numRounds;
+	
+	IntBuffer clubOffsets;
+	IntBuffer clubTeams;
+	IntBuffer clubCapacities;
+	IntBuffer leagues;
+	IntBuffer U;
+	IntBuffer roundCapacities;				// Null for files of format version 1, in which every club has one capacity
+	
+	/**
+	 * This converts the given text files in the data folder to binary files (with the extension .txt replaced by .bin).
+	 * Without arguments, every instance in the data folder is converted.
+	 **/
+	public static void main(String args[]) {
+		
+		String[] filenames = args;
+		if(filenames.length == 0) {
+			filenames = new File("../data").list((dir, name) -> MLSP_Instance.isInstanceName(name));
+			Arrays.sort(filenames);
+		}
+		
+		for(String fileIN : filenames) {
+			String fileOUT = fileIN.replaceAll("\\.txt$", "") + ".bin";
+			try {
+				convert(fileIN, fileOUT);
+				System.out.println("Converted " + fileIN + " to " + fileOUT);
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * This reads a text instance from the data folder and writes it to a binary file in the data folder
+	 **/
+	public static void convert(String textFile, String binaryFile) throws IOException {
+		write(new MLSP_Instance(textFile), new File("../data", binaryFile));
+	}
+	
+	/**
+	 * This writes an instance to the given file in the binary format
+	 **/
+	public static void write(MLSP_Instance instance, File file) throws IOException {
+		
+		int clubTeamCount = 0;
+		for(int c = 0; c < instance.numClubs; c++) {
+			clubTeamCount += instance.clubs.get(c).length;
+		}
+		int numInts = HEADER_INTS + (instance.numClubs + 1) + clubTeamCount + instance.numClubs 
+				+ instance.numLeagues * instance.leagueSize + instance.leagueSize * instance.numRounds + instance.numClubs * instance.numRounds;
+		
+		ByteBuffer buffer = ByteBuffer.allocate(4 * numInts).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION);
+		buffer.putInt(instance.numTeams).putInt(instance.numLeagues).putInt(instance.numClubs);
+		buffer.putInt(instance.leagueSize).putInt(instance.numRounds);
+		
+		int offset = 0;
+		buffer.putInt(offset);
+		for(int c = 0; c < instance.numClubs; c++) {
+			offset += instance.clubs.get(c).length;
+			buffer.putInt(offset);
+		}
+		for(int c = 0; c < instance.numClubs; c++) {
+			for(int t : instance.clubs.get(c)) {
+				buffer.putInt(t);
+			}
+		}
+		for(int c = 0; c < instance.numClubs; c++) {
+			buffer.putInt(instance.clubCapacities[c]);
+		}
+		for(int l = 0; l < instance.numLeagues; l++) {
+			for(int i = 0; i < instance.leagueSize; i++) {
+				buffer.putInt(instance.leagues[l][i]);
+			}
+		}
+		for(int h = 0; h < instance.leagueSize; h++) {
+			for(int r = 0; r < instance.numRounds; r++) {
+				buffer.putInt(instance.U[h][r]);
+			}
+		}
+		for(int c = 0; c < instance.numClubs; c++) {
+			for(int r = 0; r < instance.numRounds; r++) {
+				buffer.putInt(instance.roundCapacities[c][r]);
+			}
+		}
+		buffer.flip();
+		
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+	
+	/**
+	 * This maps a binary instance from the data folder into memory
+	 **/
+	public MLSP_BinaryInstance(String filename) throws IOException {
+		this(new File("../data", filename));
+	}
+	
+	/**
+	 * This maps the given binary instance file into memory and creates views on its arrays
+	 **/
+	public MLSP_BinaryInstance(File file) throws IOException {
+		
+		ByteBuffer mapped;
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());		// The mapping stays valid after closing the channel
+		}
+		mapped.order(ByteOrder.LITTLE_ENDIAN);
+		
+		if(mapped.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a binary MLSP instance");
+		}
+		int version = mapped.getInt(4);
+		if(version < 1 || version > VERSION) {
+			throw new IOException(file + " has unsupported format version " + version);
+		}
+		this.numTeams = mapped.getInt(8);
+		this.numLeagues = mapped.getInt(12);
+		this.numClubs = mapped.getInt(16);
+		this.leagueSize = mapped.getInt(20);
+		this.numRounds = mapped.getInt(24);
+		
+		int position = HEADER_INTS;
+		this.clubOffsets = view(mapped, position, this.numClubs + 1);
+		position += this.numClubs + 1;
+		int clubTeamCount = this.clubOffsets.get(this.numClubs);
+		this.clubTeams = view(mapped, position, clubTeamCount);
+		position += clubTeamCount;
+		this.clubCapacities = view(mapped, position, this.numClubs);
+		position += this.numClubs;
+		this.leagues = view(mapped, position, this.numLeagues * this.leagueSize);
+		position += this.numLeagues * this.leagueSize;
+		this.U = view(mapped, position, this.leagueSize * this.numRounds);
+		position += this.leagueSize * this.numRounds;
+		if(version >= 2) {
+			this.roundCapacities = view(mapped, position, this.numClubs * this.numRounds);
+		}
+	}
+	
+	/**
+	 * Returns a view of length ints on the mapped file, starting at the given int position
+	 **/
+	static IntBuffer view(ByteBuffer mapped, int position, int length) throws IOException {
+		
+		if(4L * (position + length) > mapped.capacity()) {
+			throw new IOException("Binary MLSP instance is truncated");
+		}
+		return mapped.slice(4 * position, 4 * length).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+	}
+	
+	/**
+	 * Returns the number of teams in club c
+	 **/
+	public int clubSize(int c) {
+		return this.clubOffsets.get(c + 1) - this.clubOffsets.get(c);
+	}
+	
+	/**
+	 * Returns the i-th team of club c
+	 **/
+	public int clubTeam(int c, int i) {
+		return this.clubTeams.get(this.clubOffsets.get(c) + i);
+	}
+	
+	/**
+	 * Returns the capacity of club c
+	 **/
+	public int clubCapacity(int c) {
+		return this.clubCapacities.get(c);
+	}
+	
+	/**
+	 * Returns the capacity of club c in round r
+	 **/
+	public int clubCapacity(int c, int r) {
+		return this.roundCapacities == null ? clubCapacity(c) : this.roundCapacities.get(c * this.numRounds + r);
+	}
+	
+	/**
+	 * Returns the i-th team of league l
+	 **/
+	public int leagueTeam(int l, int i) {
+		return this.leagues.get(l * this.leagueSize + i);
+	}
+	
+	/**
+	 * Returns the value of parameter U for HAP h in round r
+	 **/
+	public int u(int h, int r) {
+		return this.U.get(h * this.numRounds + r);
+	}
+	
+	/**
+	 * This copies the mapped data into an MLSP_Instance, for the solvers that work on its arrays
+	 **/
+	public MLSP_Instance toInstance() {
+		
+		ArrayList<int[]> clubs = new ArrayList<int[]>();
+		int[] capacities = new int[this.numClubs];
+		for(int c = 0; c < this.numClubs; c++) {
+			int[] club = new int[clubSize(c)];
+			this.clubTeams.get(this.clubOffsets.get(c), club);
+			clubs.add(club);
+			capacities[c] = clubCapacity(c);
+		}
+		
+		int[][] leagueArray = new int[this.numLeagues][this.leagueSize];
+		for(int l = 0; l < this.numLeagues; l++) {
+			this.leagues.get(l * this.leagueSize, leagueArray[l]);
+		}
+		
+		int[][] homeAway = new int[this.leagueSize][this.numRounds];
+		for(int h = 0; h < this.leagueSize; h++) {
+			this.U.get(h * this.numRounds, homeAway[h]);
+		}
+		
+		MLSP_Instance instance = new MLSP_Instance(this.numTeams, this.numLeagues, this.numClubs, this.leagueSize, clubs, capacities, leagueArray, homeAway);
+		if(this.roundCapacities != null) {
+			for(int c = 0; c < this.numClubs; c++) {
+				this.roundCapacities.get(c * this.numRounds, instance.roundCapacities[c]);
+			}
+		}
+		return instance;
+	}
+}
@@ -0,0 +1,123 @@
+import java.util.*;
+
+/* This program stores the bit-packed form of an MLSP instance that is shared by the heuristics and by the evaluation of solutions.
+ * Every HAP is a single long, where bit r is set if the HAP plays at home in round r, and an assignment is an int[] that maps every
+ * team to its HAP. The home games of a club follow from the set bits of the HAPs of its teams, the home games two HAPs have in common
+ * are the popcount of the AND of their masks, and the rounds in which two HAPs differ are the bits of their XOR. Home counts are kept
+ * in one flat int[] with the counts of club c at positions c*numRounds up to (c+1)*numRounds, which the caller allocates once, such
+ * that evaluating an assignment does not allocate. The number of rounds should be at most 64, that is, leagues of at most 33 teams.
+ * The model depends on the clubs and on U, capacities are always read from the instance.
+ */
+
+public class MLSP_BitModel {
+	
+	static final int MAX_ROUNDS = 64;
+	
+	final int numTeams;
+	final int numClubs;
+	final int numRounds;
+	final long[] hapMask;			// Bit r of hapMask[h] is set if HAP h plays at home in round r
+	final int[] hapHomeGames;		// The number of home games of each HAP
+	final int[] teamClub;			// The club each team belongs to, or -1 if the team belongs to no club
+	final int[][] roundCapacities;	// The capacities of the instance, shared such that changes made with setCapacity are seen
+	
+	/**
+	 * Builds the bit-packed model of the instance
+	 **/
+	public MLSP_BitModel(MLSP_Instance instance) {
+		
+		if(instance.numRounds > MAX_ROUNDS) {
+			throw new IllegalArgumentException("The bit-packed model supports at most " + MAX_ROUNDS + " rounds, the instance has "
+					+ instance.numRounds);
+		}
+		this.numTeams = instance.numTeams;
+		this.numClubs = instance.numClubs;
+		this.numRounds = instance.numRounds;
+		this.teamClub = instance.getTeamClubs();
+		this.roundCapacities = instance.roundCapacities;
+		
+		this.hapMask = instance.template.hapMask;
+		this.hapHomeGames = new int[instance.leagueSize];
+		for(int h = 0; h < instance.leagueSize; h++) {
+			this.hapHomeGames[h] = Long.bitCount(this.hapMask[h]);
+		}
+	}
+	
+	/**
+	 * Returns the mask with the bits of all rounds set
+	 **/
+	public long allRounds() {
+		return this.numRounds == 64 ? -1L : (1L << this.numRounds) - 1;
+	}
+	
+	/**
+	 * Returns the number of rounds in which both HAPs play at home
+	 **/
+	public int overlap(int h1, int h2) {
+		return Long.bitCount(this.hapMask[h1] & this.hapMask[h2]);
+	}
+	
+	/**
+	 * Returns a new array for the home counts of all clubs in all rounds, to be reused by the caller
+	 **/
+	public int[] newHomeCounts() {
+		return new int[this.numClubs * this.numRounds];
+	}
+	
+	/**
+	 * This method adds d home games for club c in every round in which HAP h plays at home
+	 **/
+	public void addHomeGames(int[] homeCount, int c, int h, int d) {
+		
+		int base = c * this.numRounds;
+		for(long rounds = this.hapMask[h]; rounds != 0; rounds &= rounds - 1) {
+			homeCount[base + Long.numberOfTrailingZeros(rounds)] += d;
+		}
+	}
+	
+	/**
+	 * This method fills homeCount with the number of home games of every club in every round under an assignment of teams to HAPs
+	 **/
+	public void countHomeGames(int[] hapOfTeam, int[] homeCount) {
+		
+		Arrays.fill(homeCount, 0);
+		for(int t = 0; t < this.numTeams; t++) {
+			int c = this.teamClub[t];
+			if(c >= 0) {
+				addHomeGames(homeCount, c, hapOfTeam[t], 1);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of violations of club c in round r for the given home counts
+	 **/
+	public int violations(int[] homeCount, int c, int r) {
+		return Math.max(0, homeCount[c * this.numRounds + r] - this.roundCapacities[c][r]);
+	}
+	
+	/**
+	 * Returns the total number of violations for the given home counts
+	 **/
+	public int violations(int[] homeCount) {
+		
+		int total = 0;
+		for(int c = 0; c < this.numClubs; c++) {
+			int[] cap = this.roundCapacities[c];
+			int base = c * this.numRounds;
+			for(int r = 0; r < this.numRounds; r++) {
+				total += Math.max(0, homeCount[base + r] - cap[r]);
+			}
+		}
+		return total;
+	}
+	
+	/**
+	 * Returns the total number of violations of an assignment of teams to HAPs, using homeCount as scratch space
+	 **/
+	public int evaluate(int[] hapOfTeam, int[] homeCount) {
+		
+		countHomeGames(hapOfTeam, homeCount);
+		return violations(homeCount);
+	}
+}
@@ -0,0 +1,435 @@
+import java.util.*;
+
+/* This program solves the MLSP exactly without CPLEX, by a depth-first branch-and-bound over the assignment of HAPs to teams.
+ * Leagues are branched one after the other (most constrained leagues first), and within a league the HAPs that are still unused 
+ * are assigned team by team, so every leaf is a permutation of the HAPs within every league.
+ * 
+ * Pruning uses that the violations of a club in a round, max(0, home games - capacity), can only grow when more teams are assigned.
+ * Hence a team that is still unassigned adds at least the number of its home rounds in which its club is already at capacity. The 
+ * rounds at capacity are kept per club as a bit mask, such that this lower bound follows from a popcount per (team, HAP).
+ * 
+ * Symmetry is broken in three ways:
+ * - The HAP sets are complementary: for every HAP its complement is also in the set. When the complement mapping together with a 
+ *   permutation of the rounds maps U onto itself (which holds for all HAP sets of the Data Generator), replacing every HAP by its
+ *   complement only permutes the rounds of every club, so the number of violations does not change (as long as the capacity of
+ *   every club is the same in all rounds). The first team that is branched is therefore only assigned the first HAP of each 
+ *   complementary pair.
+ * - Teams whose club can never exceed its capacity (or that are part of no club) do not influence the violations, and simply receive
+ *   the HAPs that are left over in their league.
+ * - Two teams of the same league in the same club are interchangeable, so only one of their orders is explored.
+ */
+
+public class MLSP_BranchAndBound {
+	
+	MLSP_Instance instance;
+	int[] teamClub;
+	long[] hapMask;				// Bit r of hapMask[h] is set if HAP h plays at home in round r
+	int[] complement;			// The complementary HAP of each HAP, or null if the complement mapping is not a symmetry
+	boolean complementBreaking;
+	
+	// The teams that can cause violations, per league in branching order, and the teams that cannot
+	int[] leagueOrder;
+	int[][] constrainedTeams;
+	int[][] freeTeams;
+	
+	// The current state of the search
+	int[] hap;
+	int[][] homeCount;
+	long[] saturated;			// Bit r of saturated[c] is set if club c is at (or above) its capacity in round r
+	long[] usedHaps;			// The HAPs that are already assigned in each league
+	int violations;
+	
+	int[] bestHap;
+	int bestViolations;
+	
+	int[] futureBound;			// Lower bound on the violations added by the leagues after the k-th league, set when league k is entered
+	
+	long nodes;
+	volatile long deadline;		// Set to the past when the thread that waits for the search is interrupted
+	boolean provenOptimal;
+	
+	/**
+	 * Creates the solver for the given instance, the number of rounds should be at most 64
+	 **/
+	public MLSP_BranchAndBound(MLSP_Instance instance) {
+		
+		this.instance = instance;
+		this.teamClub = instance.getTeamClubs();
+		
+		this.hapMask = instance.getBitModel().hapMask;
+		this.complement = complementSymmetry();
+		
+		this.hap = new int[instance.numTeams];
+		this.homeCount = new int[instance.numClubs][instance.numRounds];
+		this.saturated = new long[instance.numClubs];
+		this.usedHaps = new long[instance.numLeagues];
+		this.futureBound = new int[instance.numLeagues];
+		
+		orderLeagues();
+		
+		// The complement symmetry permutes the rounds, so it only holds if capacities do not differ between rounds. It is also not 
+		// combined with the ordering of interchangeable teams when both apply to the first team.
+		int[] first = this.constrainedTeams[this.leagueOrder[0]];
+		this.complementBreaking = this.complement != null && uniformCapacities() && first.length > 0
+				&& (first.length == 1 || this.teamClub[first[0]] != this.teamClub[first[1]]);
+	}
+	
+	/**
+	 * Returns the complement mapping of the HAPs if it is a symmetry of the instance, and null otherwise. The mapping is a symmetry 
+	 * if there is a permutation of the rounds that maps every column of U onto the corresponding column with complemented HAPs.
+	 **/
+	int[] complementSymmetry() {
+		
+		int leagueSize = this.instance.leagueSize;
+		long all = allRounds();
+		int[] comp = new int[leagueSize];
+		for(int h = 0; h < leagueSize; h++) {
+			comp[h] = -1;
+			for(int k = 0; k < leagueSize; k++) {
+				if(this.hapMask[k] == (~this.hapMask[h] & all)) {
+					comp[h] = k;
+				}
+			}
+			if(comp[h] < 0 || comp[h] == h) {
+				return null;
+			}
+		}
+		
+		// Compare the columns of U with the columns after complementing, as multisets
+		ArrayList<String> columns = new ArrayList<String>();
+		ArrayList<String> mapped = new ArrayList<String>();
+		for(int r = 0; r < this.instance.numRounds; r++) {
+			StringBuilder column = new StringBuilder();
+			StringBuilder mappedColumn = new StringBuilder();
+			for(int h = 0; h < leagueSize; h++) {
+				column.append(this.instance.U[h][r]);
+				mappedColumn.append(this.instance.U[comp[h]][r]);
+			}
+			columns.add(column.toString());
+			mapped.add(mappedColumn.toString());
+		}
+		Collections.sort(columns);
+		Collections.sort(mapped);
+		return columns.equals(mapped) ? comp : null;
+	}
+	
+	/**
+	 * Returns true if club c can exceed its capacity in some round, that is, if it has more teams than its capacity
+	 **/
+	boolean canBeViolated(int c) {
+		return c >= 0 && this.instance.clubSizes[c] > minCapacity(c);
+	}
+	
+	/**
+	 * This method splits every league into constrained and free teams, sorts the constrained teams by the tightness of their club,
+	 * and orders the leagues such that the leagues with the tightest teams are branched first.
+	 **/
+	void orderLeagues() {
+		
+		int numLeagues = this.instance.numLeagues;
+		this.constrainedTeams = new int[numLeagues][];
+		this.freeTeams = new int[numLeagues][];
+		double[] leagueTightness = new double[numLeagues];
+		
+		for(int l = 0; l < numLeagues; l++) {
+			ArrayList<Integer> constrained = new ArrayList<Integer>();
+			ArrayList<Integer> free = new ArrayList<Integer>();
+			for(int t : this.instance.leagues[l]) {
+				if(canBeViolated(this.teamClub[t])) {
+					constrained.add(t);
+					leagueTightness[l] += tightness(this.teamClub[t]);
+				}
+				else {
+					free.add(t);
+				}
+			}
+			// Teams of the same club are kept next to each other, which the symmetry breaking for interchangeable teams relies on
+			Comparator<Integer> byTightness = (a, b) -> Double.compare(tightness(this.teamClub[b]), tightness(this.teamClub[a]));
+			constrained.sort(byTightness.thenComparing(a -> this.teamClub[a]));
+			this.constrainedTeams[l] = constrained.stream().mapToInt(Integer::intValue).toArray();
+			this.freeTeams[l] = free.stream().mapToInt(Integer::intValue).toArray();
+		}
+		
+		Integer[] order = new Integer[numLeagues];
+		for(int l = 0; l < numLeagues; l++) {
+			order[l] = l;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(leagueTightness[b], leagueTightness[a]));
+		this.leagueOrder = new int[numLeagues];
+		for(int k = 0; k < numLeagues; k++) {
+			this.leagueOrder[k] = order[k];
+		}
+	}
+	
+	/**
+	 * Returns the ratio of the size of a club to its capacity, larger values are more likely to cause violations
+	 **/
+	double tightness(int c) {
+		return this.instance.clubSizes[c] / (double) Math.max(1, minCapacity(c));
+	}
+	
+	/**
+	 * Returns the lowest capacity of club c over all rounds
+	 **/
+	int minCapacity(int c) {
+		
+		int least = Integer.MAX_VALUE;
+		for(int cap : this.instance.roundCapacities[c]) {
+			least = Math.min(least, cap);
+		}
+		return least;
+	}
+	
+	/**
+	 * Returns true if the capacity of every club is the same in all rounds
+	 **/
+	boolean uniformCapacities() {
+		
+		for(int c = 0; c < this.instance.numClubs; c++) {
+			for(int cap : this.instance.roundCapacities[c]) {
+				if(cap != this.instance.roundCapacities[c][0]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * This method runs the branch-and-bound until the tree is fully explored or the time limit passes, and returns the lowest number
+	 * of violations found. The search starts with a short annealing run to get an upper bound. Whether the result is proven optimal 
+	 * can be checked with isProvenOptimal(). If the calling thread is interrupted, the search stops as if the time limit passed and
+	 * the interrupt status is restored.
+	 **/
+	public int solve(long timeLimitMillis) {
+		
+		this.deadline = System.currentTimeMillis() + timeLimitMillis;
+		this.nodes = 0;
+		
+		MLSP_Annealer annealer = new MLSP_Annealer(this.instance, 0);
+		annealer.anneal(200, 3.0, 0.05);
+		this.bestHap = annealer.getBestAssignment();
+		this.bestViolations = annealer.getBestViolations();
+		
+		this.violations = 0;
+		Arrays.fill(this.usedHaps, 0);
+		for(int c = 0; c < this.instance.numClubs; c++) {
+			Arrays.fill(this.homeCount[c], 0);
+			this.saturated[c] = 0;
+			for(int r = 0; r < this.instance.numRounds; r++) {
+				if(this.instance.roundCapacities[c][r] <= 0) {
+					this.saturated[c] |= 1L << r;
+				}
+			}
+		}
+		
+		// The depth of the search equals the number of constrained teams, so it runs on a thread with a large stack
+		boolean[] complete = new boolean[1];
+		Thread search = new Thread(null, () -> complete[0] = branch(0, 0), "MLSP-BranchAndBound", 1L << 28);
+		search.start();
+		boolean interrupted = false;
+		while(search.isAlive()) {
+			try {
+				search.join();
+			}
+			catch (InterruptedException e) {
+				// The search stops at its next time check, and is joined again such that the best solution no longer changes
+				this.deadline = Long.MIN_VALUE;
+				interrupted = true;
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		this.provenOptimal = complete[0];
+		
+		return this.bestViolations;
+	}
+	
+	/**
+	 * Returns the bit mask containing all rounds
+	 **/
+	long allRounds() {
+		return this.instance.getBitModel().allRounds();
+	}
+	
+	/**
+	 * Assigns a HAP to the i-th constrained team of the k-th league in branching order, and recurses. Returns false if the search 
+	 * was stopped by the time limit.
+	 **/
+	boolean branch(int k, int i) {
+		
+		if(k == this.leagueOrder.length) {
+			if(this.violations < this.bestViolations) {
+				this.bestViolations = this.violations;
+				this.bestHap = this.hap.clone();
+			}
+			return true;
+		}
+		int l = this.leagueOrder[k];
+		int[] teams = this.constrainedTeams[l];
+		if(i == teams.length) {
+			assignFreeTeams(l);
+			return branch(k + 1, 0);
+		}
+		
+		this.nodes++;
+		if((this.nodes & 1023) == 0 && System.currentTimeMillis() > this.deadline) {
+			return false;
+		}
+		if(i == 0) {
+			// Saturated rounds only grow deeper in the tree, so this bound stays valid for the whole subtree of league k
+			this.futureBound[k] = 0;
+			for(int m = k + 1; m < this.leagueOrder.length; m++) {
+				this.futureBound[k] += leagueBound(this.leagueOrder[m], 0);
+			}
+		}
+		if(this.violations + leagueBound(l, i) + this.futureBound[k] >= this.bestViolations) {
+			return true;
+		}
+		
+		int t = teams[i];
+		int c = this.teamClub[t];
+		
+		// Candidate HAPs are tried in order of the violations they add
+		int leagueSize = this.instance.leagueSize;
+		int[] candidates = new int[leagueSize];
+		int[] cost = new int[leagueSize];
+		int numCandidates = 0;
+		for(int h = 0; h < leagueSize; h++) {
+			if((this.usedHaps[l] & (1L << h)) != 0) {
+				continue;
+			}
+			if(k == 0 && i == 0 && this.complementBreaking && this.complement[h] < h) {
+				continue;			// Complement symmetry: the first team only takes the first HAP of every pair
+			}
+			if(i > 0 && this.teamClub[teams[i - 1]] == c && h < this.hap[teams[i - 1]]) {
+				continue;			// Interchangeable teams of the same club get increasing HAPs
+			}
+			candidates[numCandidates] = h;
+			cost[h] = Long.bitCount(this.hapMask[h] & this.saturated[c]);
+			numCandidates++;
+		}
+		for(int a = 1; a < numCandidates; a++) {
+			int h = candidates[a];
+			int b = a - 1;
+			while(b >= 0 && cost[candidates[b]] > cost[h]) {
+				candidates[b + 1] = candidates[b];
+				b--;
+			}
+			candidates[b + 1] = h;
+		}
+		
+		for(int a = 0; a < numCandidates; a++) {
+			int h = candidates[a];
+			assign(t, l, h);
+			boolean complete = branch(k, i + 1);
+			unassign(t, l, h);
+			if(!complete) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns a lower bound on the violations that are still to be added by the constrained teams of league l from position i onwards,
+	 * where every team takes its cheapest unused HAP
+	 **/
+	int leagueBound(int l, int i) {
+		
+		int bound = 0;
+		int[] teams = this.constrainedTeams[l];
+		for(int j = i; j < teams.length; j++) {
+			long saturatedRounds = this.saturated[this.teamClub[teams[j]]];
+			if(saturatedRounds == 0) {
+				continue;
+			}
+			int least = Integer.MAX_VALUE;
+			for(int h = 0; h < this.hapMask.length && least > 0; h++) {
+				if((this.usedHaps[l] & (1L << h)) == 0) {
+					least = Math.min(least, Long.bitCount(this.hapMask[h] & saturatedRounds));
+				}
+			}
+			bound += least;
+		}
+		return bound;
+	}
+	
+	/**
+	 * Assigns HAP h to constrained team t of league l and updates the home counts, saturated rounds and violations
+	 **/
+	void assign(int t, int l, int h) {
+		
+		int c = this.teamClub[t];
+		int[] cap = this.instance.roundCapacities[c];
+		this.hap[t] = h;
+		this.usedHaps[l] |= 1L << h;
+		this.violations += Long.bitCount(this.hapMask[h] & this.saturated[c]);
+		
+		int[] count = this.homeCount[c];
+		for(long rounds = this.hapMask[h]; rounds != 0; rounds &= rounds - 1) {
+			int r = Long.numberOfTrailingZeros(rounds);
+			count[r]++;
+			if(count[r] == cap[r]) {
+				this.saturated[c] |= 1L << r;
+			}
+		}
+	}
+	
+	/**
+	 * Reverts assign(t, l, h)
+	 **/
+	void unassign(int t, int l, int h) {
+		
+		int c = this.teamClub[t];
+		int[] cap = this.instance.roundCapacities[c];
+		this.usedHaps[l] &= ~(1L << h);
+		
+		int[] count = this.homeCount[c];
+		for(long rounds = this.hapMask[h]; rounds != 0; rounds &= rounds - 1) {
+			int r = Long.numberOfTrailingZeros(rounds);
+			if(count[r] == cap[r]) {
+				this.saturated[c] &= ~(1L << r);
+			}
+			count[r]--;
+		}
+		this.violations -= Long.bitCount(this.hapMask[h] & this.saturated[c]);
+	}
+	
+	/**
+	 * Gives the free teams of league l the HAPs that the constrained teams left over
+	 **/
+	void assignFreeTeams(int l) {
+		
+		int h = 0;
+		for(int t : this.freeTeams[l]) {
+			while((this.usedHaps[l] & (1L << h)) != 0) {
+				h++;
+			}
+			this.hap[t] = h;
+			h++;
+		}
+	}
+	
+	/**
+	 * Returns true if the last call to solve explored the whole tree, such that the best solution found is optimal
+	 **/
+	public boolean isProvenOptimal() {
+		return this.provenOptimal;
+	}
+	
+	/**
+	 * Returns the number of nodes explored by the last call to solve
+	 **/
+	public long getNodes() {
+		return this.nodes;
+	}
+	
+	/**
+	 * Returns the best assignment of teams to HAPs found
+	 **/
+	public int[] getBestAssignment() {
+		return this.bestHap.clone();
+	}
+}
@@ -0,0 +1,68 @@
+import java.io.*;
+import java.net.*;
+import java.net.http.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/* This program is a simple client for MLSP_Server, which sends instances from the data folder to the server and prints the JSON 
+ * response together with the round-trip time. It stands in for the planning tools that send scenarios to the server, and can be 
+ * used to check that a server is running. The options are given as arguments:
+ * 
+ *   java MLSP_Client [--port <n>] [--solver <name>] [--seed <n>] [--timeLimit <ms>] [--repeat <n>] <file> [<file> ...]
+ * 
+ * With --repeat, every file is sent the given number of times, such that the later requests use the instance cache of the server.
+ */
+
+public class MLSP_Client {
+	
+	public static void main(String args[]) {
+		
+		int port = 8080;
+		String query = "";
+		int repeat = 1;
+		int first = 0;
+		while(first + 1 < args.length && args[first].startsWith("--")) {
+			switch(args[first]) {
+			case "--port":
+				port = Integer.parseInt(args[first + 1]);
+				break;
+			case "--solver":
+			case "--seed":
+			case "--timeLimit":
+				query += (query.isEmpty() ? "?" : "&") + args[first].substring(2) + "=" + URLEncoder.encode(args[first + 1], StandardCharsets.UTF_8);
+				break;
+			case "--repeat":
+				repeat = Integer.parseInt(args[first + 1]);
+				break;
+			default:
+				System.out.println("Unknown option: " + args[first]);
+				return;
+			}
+			first += 2;
+		}
+		if(first >= args.length) {
+			System.out.println("Usage: java MLSP_Client [--port <n>] [--solver <name>] [--seed <n>] [--timeLimit <ms>] [--repeat <n>] <file> [<file> ...]");
+			return;
+		}
+		
+		HttpClient client = HttpClient.newHttpClient();
+		URI uri = URI.create("http://localhost:" + port + "/solve" + query);
+		try {
+			for(int i = first; i < args.length; i++) {
+				Path file = Paths.get("../data", args[i]);
+				for(int r = 0; r < repeat; r++) {
+					HttpRequest request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofFile(file)).build();
+					long start = System.nanoTime();
+					HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+					System.out.printf("%s (%d, %.1f ms): %s%n", args[i], response.statusCode(), (System.nanoTime() - start) / 1e6, response.body());
+				}
+			}
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/* This program stores, for every club c and round r, the pairs (team t, HAP h) for which x[t][h] schedules a home game of club c in
+ * round r, that is, the teams t of club c and the HAPs h with U[h][r] = 1. These are exactly the non-zero coefficients of constraint 3
+ * of the MILP, so the index is shared by the model builder and by everything that evaluates violations. The pairs are stored in 
+ * compressed form: the pairs of (club c, round r) are at positions start[c*numRounds + r] up to start[c*numRounds + r + 1].
+ * The index only depends on the clubs and on U, capacities are always read from the instance.
+ */
+
+public class MLSP_ClubRoundIndex {
+	
+	final int numClubs;
+	final int numRounds;
+	final int[] start;
+	final int[] teams;
+	final int[] haps;
+	
+	/**
+	 * Builds the index for the clubs and HAP set of the instance
+	 **/
+	public MLSP_ClubRoundIndex(MLSP_Instance instance) {
+		
+		this.numClubs = instance.numClubs;
+		this.numRounds = instance.numRounds;
+		
+		// The HAPs that play at home in each round
+		int[][] homeHaps = new int[instance.numRounds][];
+		for(int r = 0; r < instance.numRounds; r++) {
+			int count = 0;
+			for(int h = 0; h < instance.leagueSize; h++) {
+				count += instance.U[h][r];
+			}
+			homeHaps[r] = new int[count];
+			int k = 0;
+			for(int h = 0; h < instance.leagueSize; h++) {
+				if(instance.U[h][r] == 1) {
+					homeHaps[r][k++] = h;
+				}
+			}
+		}
+		
+		this.start = new int[this.numClubs * this.numRounds + 1];
+		for(int c = 0; c < this.numClubs; c++) {
+			for(int r = 0; r < this.numRounds; r++) {
+				int key = c * this.numRounds + r;
+				this.start[key + 1] = this.start[key] + instance.clubs.get(c).length * homeHaps[r].length;
+			}
+		}
+		
+		int size = this.start[this.numClubs * this.numRounds];
+		this.teams = new int[size];
+		this.haps = new int[size];
+		int k = 0;
+		for(int c = 0; c < this.numClubs; c++) {
+			int[] club = instance.clubs.get(c);
+			for(int r = 0; r < this.numRounds; r++) {
+				for(int t : club) {
+					for(int h : homeHaps[r]) {
+						this.teams[k] = t;
+						this.haps[k] = h;
+						k++;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the position of the first pair of club c in round r
+	 **/
+	public int begin(int c, int r) {
+		return this.start[c * this.numRounds + r];
+	}
+	
+	/**
+	 * Returns the position after the last pair of club c in round r
+	 **/
+	public int end(int c, int r) {
+		return this.start[c * this.numRounds + r + 1];
+	}
+	
+	/**
+	 * Returns the total number of pairs stored, which is the number of non-zero coefficients of x in constraint 3
+	 **/
+	public int size() {
+		return this.teams.length;
+	}
+	
+	/**
+	 * Returns the number of home games of club c in round r under an assignment of teams to HAPs
+	 **/
+	public int homeGames(int c, int r, int[] hapOfTeam) {
+		
+		int count = 0;
+		for(int k = begin(c, r); k < end(c, r); k++) {
+			if(hapOfTeam[this.teams[k]] == this.haps[k]) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,65 @@
+import java.util.*;
+
+/* This program encodes a solution of the MLSP compactly: since every league assigns each of its HAPs to exactly one of its teams, a
+ * solution is fully described by the HAP of every team, league by league. The encoding has (number of leagues)*(league size) bytes,
+ * where byte l*leagueSize + i is the HAP of team leagues[l][i] (as unsigned byte, so leagues of at most 256 teams). Outputs of
+ * outputSolution store x (teams * league size) and z (clubs * rounds) as text, which is mostly zeros for large instances; the
+ * violations z are not stored here, but recomputed on demand by storeAssignment.
+ */
+
+public class MLSP_CompactSolution {
+	
+	static final int MAX_LEAGUE_SIZE = 256;
+	
+	/**
+	 * Returns the compact encoding of the given HAP of every team
+	 **/
+	public static byte[] encode(MLSP_Instance instance, int[] hapOfTeam) {
+		
+		if(instance.leagueSize > MAX_LEAGUE_SIZE) {
+			throw new IllegalArgumentException("Leagues of more than " + MAX_LEAGUE_SIZE + " teams cannot be encoded in bytes");
+		}
+		byte[] bytes = new byte[instance.numLeagues * instance.leagueSize];
+		for(int l = 0; l < instance.numLeagues; l++) {
+			for(int i = 0; i < instance.leagueSize; i++) {
+				bytes[l * instance.leagueSize + i] = (byte) hapOfTeam[instance.leagues[l][i]];
+			}
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Returns the compact encoding of the solution stored in the instance, or null if it has none
+	 **/
+	public static byte[] encode(MLSP_Instance instance) {
+		
+		int[] assignment = instance.getAssignment();
+		return assignment == null ? null : encode(instance, assignment);
+	}
+	
+	/**
+	 * Returns the HAP of every team in the compact encoding, where teams that are in no league get -1
+	 **/
+	public static int[] decode(MLSP_Instance instance, byte[] bytes) {
+		
+		if(bytes.length != instance.numLeagues * instance.leagueSize) {
+			throw new IllegalArgumentException("The encoding has " + bytes.length + " bytes, but the instance has "
+					+ instance.numLeagues * instance.leagueSize + " league places");
+		}
+		int[] hapOfTeam = new int[instance.numTeams];
+		Arrays.fill(hapOfTeam, -1);
+		for(int l = 0; l < instance.numLeagues; l++) {
+			for(int i = 0; i < instance.leagueSize; i++) {
+				hapOfTeam[instance.leagues[l][i]] = bytes[l * instance.leagueSize + i] & 0xFF;
+			}
+		}
+		return hapOfTeam;
+	}
+	
+	/**
+	 * This stores the encoded solution in the instance, which recomputes x, z and the number of violations
+	 **/
+	public static void restore(MLSP_Instance instance, byte[] bytes) {
+		instance.storeAssignment(decode(instance, bytes));
+	}
+}
@@ -0,0 +1,268 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/* This program decomposes an MLSP instance into smaller instances that are solved at the same time. A league only interacts with the
+ * clubs of its teams, so the leagues and clubs form a bipartite graph, and the connected components of this graph are independent 
+ * instances: their violations simply add up. Components that are still too large can optionally be split further into parts of at
+ * most a given number of leagues, grown greedily such that few clubs are shared between parts. A club that is shared (cut) between 
+ * parts gets its capacity divided over the parts in proportion to its teams in every part. Then the violations of the parts add up 
+ * to at least the true violations, and the merged solution is improved afterwards by a short annealing run over the whole instance.
+ */
+
+public class MLSP_Decomposition {
+	
+	MLSP_Instance instance;
+	int[] teamClub;
+	ArrayList<int[]> parts = new ArrayList<int[]>();		// The leagues of every part
+	boolean hasCutClubs;
+	
+	/**
+	 * Decomposes the instance into its connected components
+	 **/
+	public MLSP_Decomposition(MLSP_Instance instance) {
+		this(instance, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Decomposes the instance into its connected components, and splits components with more than maxLeagues leagues into parts
+	 **/
+	public MLSP_Decomposition(MLSP_Instance instance, int maxLeagues) {
+		
+		this.instance = instance;
+		this.teamClub = instance.getTeamClubs();
+		
+		for(int[] component : components()) {
+			if(component.length <= maxLeagues) {
+				this.parts.add(component);
+			}
+			else {
+				this.parts.addAll(partition(component, maxLeagues));
+				this.hasCutClubs = true;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the leagues of every connected component of the league-club graph, using union-find over leagues and clubs 
+	 * (league l is node l, club c is node numLeagues + c)
+	 **/
+	ArrayList<int[]> components() {
+		
+		int numLeagues = this.instance.numLeagues;
+		int[] parent = new int[numLeagues + this.instance.numClubs];
+		for(int i = 0; i < parent.length; i++) {
+			parent[i] = i;
+		}
+		for(int l = 0; l < numLeagues; l++) {
+			for(int t : this.instance.leagues[l]) {
+				if(this.teamClub[t] >= 0) {
+					parent[find(parent, l)] = find(parent, numLeagues + this.teamClub[t]);
+				}
+			}
+		}
+		
+		LinkedHashMap<Integer, ArrayList<Integer>> byRoot = new LinkedHashMap<Integer, ArrayList<Integer>>();
+		for(int l = 0; l < numLeagues; l++) {
+			byRoot.computeIfAbsent(find(parent, l), root -> new ArrayList<Integer>()).add(l);
+		}
+		ArrayList<int[]> result = new ArrayList<int[]>();
+		for(ArrayList<Integer> leagues : byRoot.values()) {
+			result.add(leagues.stream().mapToInt(Integer::intValue).toArray());
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the root of node i in the union-find structure, halving the path on the way
+	 **/
+	static int find(int[] parent, int i) {
+		
+		while(parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+	
+	/**
+	 * Splits the leagues of a component into parts of at most maxLeagues leagues. Every part starts from an unused league and 
+	 * repeatedly adds the unused league with the most teams in clubs that the part already contains.
+	 **/
+	ArrayList<int[]> partition(int[] component, int maxLeagues) {
+		
+		// For every club, the leagues of the component that have a team in it
+		HashMap<Integer, ArrayList<Integer>> clubLeagues = new HashMap<Integer, ArrayList<Integer>>();
+		for(int l : component) {
+			for(int t : this.instance.leagues[l]) {
+				if(this.teamClub[t] >= 0) {
+					clubLeagues.computeIfAbsent(this.teamClub[t], c -> new ArrayList<Integer>()).add(l);
+				}
+			}
+		}
+		
+		ArrayList<int[]> result = new ArrayList<int[]>();
+		HashSet<Integer> unused = new HashSet<Integer>();
+		for(int l : component) {
+			unused.add(l);
+		}
+		for(int l : component) {
+			if(!unused.contains(l)) {
+				continue;
+			}
+			ArrayList<Integer> part = new ArrayList<Integer>();
+			HashSet<Integer> partClubs = new HashSet<Integer>();
+			HashMap<Integer, Integer> gain = new HashMap<Integer, Integer>();		// Unused league -> teams in clubs of the part
+			int next = l;
+			while(next >= 0 && part.size() < maxLeagues) {
+				part.add(next);
+				unused.remove(next);
+				gain.remove(next);
+				for(int t : this.instance.leagues[next]) {
+					int c = this.teamClub[t];
+					if(c >= 0 && partClubs.add(c)) {
+						for(int other : clubLeagues.get(c)) {
+							if(unused.contains(other)) {
+								gain.merge(other, 1, Integer::sum);
+							}
+						}
+					}
+				}
+				next = -1;
+				int best = 0;
+				for(Map.Entry<Integer, Integer> entry : gain.entrySet()) {
+					if(entry.getValue() > best) {
+						best = entry.getValue();
+						next = entry.getKey();
+					}
+				}
+			}
+			result.add(part.stream().mapToInt(Integer::intValue).toArray());
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the number of parts
+	 **/
+	public int getNumParts() {
+		return this.parts.size();
+	}
+	
+	/**
+	 * Creates the instance of a part: its teams are renumbered in the order of its leagues, and its clubs only contain the teams 
+	 * of the part. The capacity of a club is divided over the parts in proportion to its number of teams in every part. The global
+	 * number of each team of the part is stored in teamIds.
+	 **/
+	MLSP_Instance createPartInstance(int[] partLeagues, int[] teamIds) {
+		
+		int leagueSize = this.instance.leagueSize;
+		int numRounds = this.instance.numRounds;
+		
+		int[][] leagues = new int[partLeagues.length][leagueSize];
+		LinkedHashMap<Integer, ArrayList<Integer>> clubTeams = new LinkedHashMap<Integer, ArrayList<Integer>>();
+		int local = 0;
+		for(int i = 0; i < partLeagues.length; i++) {
+			for(int j = 0; j < leagueSize; j++) {
+				int t = this.instance.leagues[partLeagues[i]][j];
+				teamIds[local] = t;
+				leagues[i][j] = local;
+				if(this.teamClub[t] >= 0) {
+					clubTeams.computeIfAbsent(this.teamClub[t], c -> new ArrayList<Integer>()).add(local);
+				}
+				local++;
+			}
+		}
+		
+		ArrayList<int[]> clubs = new ArrayList<int[]>();
+		int[] capacities = new int[clubTeams.size()];
+		int[][] roundCapacities = new int[clubTeams.size()][numRounds];
+		int k = 0;
+		for(Map.Entry<Integer, ArrayList<Integer>> entry : clubTeams.entrySet()) {
+			int c = entry.getKey();
+			int partSize = entry.getValue().size();
+			clubs.add(entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+			for(int r = 0; r < numRounds; r++) {
+				roundCapacities[k][r] = shareOfCapacity(this.instance.roundCapacities[c][r], partSize, this.instance.clubSizes[c]);
+			}
+			capacities[k] = shareOfCapacity(this.instance.clubCapacities[c], partSize, this.instance.clubSizes[c]);
+			k++;
+		}
+		
+		MLSP_Instance part = new MLSP_Instance(local, partLeagues.length, clubs.size(), leagueSize, clubs, capacities, leagues, this.instance.U);
+		part.roundCapacities = roundCapacities;
+		return part;
+	}
+	
+	/**
+	 * Returns the part of a capacity for partSize of the clubSize teams of a club, rounded down
+	 **/
+	static int shareOfCapacity(int capacity, int partSize, int clubSize) {
+		return partSize == clubSize ? capacity : (int) ((long) capacity * partSize / clubSize);
+	}
+	
+	/**
+	 * This method solves all parts at the same time with the given solver on a pool of threads, and stores the merged solution in
+	 * the instance. A part for which the solver stores no solution (for instance when CPLEX reaches its time limit without an
+	 * incumbent) is solved with a short annealing run instead, counted as dec.fallbackParts. If clubs are cut between parts, the 
+	 * merged solution is improved with a short annealing run. If the calling thread is interrupted, the parts that are still
+	 * running are cancelled and a CancellationException is thrown, with the interrupt status of the thread set.
+	 **/
+	public void solve(MLSP_Solver solver, int numThreads) {
+		
+		double startTime = System.currentTimeMillis();
+		
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		ArrayList<Future<int[]>> results = new ArrayList<Future<int[]>>();
+		ArrayList<int[]> teamIds = new ArrayList<int[]>();
+		for(int[] partLeagues : this.parts) {
+			int[] ids = new int[partLeagues.length * this.instance.leagueSize];
+			teamIds.add(ids);
+			results.add(pool.submit(() -> {
+				MLSP_Instance part = createPartInstance(partLeagues, ids);
+				solver.solve(part);
+				int[] partAssignment = part.getAssignment();
+				if(partAssignment == null) {
+					MLSP_Metrics.count("dec.fallbackParts", 1);
+					MLSP_Annealer annealer = new MLSP_Annealer(part, 0);
+					annealer.anneal(100, 0.5, 0.05);
+					partAssignment = annealer.getBestAssignment();
+				}
+				return partAssignment;
+			}));
+		}
+		
+		int[] assignment = new int[this.instance.numTeams];
+		try {
+			for(int p = 0; p < results.size(); p++) {
+				int[] partAssignment = results.get(p).get();
+				int[] ids = teamIds.get(p);
+				for(int i = 0; i < ids.length; i++) {
+					assignment[ids[i]] = partAssignment[i];
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new CancellationException("The decomposition was interrupted before all parts were solved");
+		}
+		catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		finally {
+			pool.shutdown();
+		}
+		
+		if(this.hasCutClubs) {
+			MLSP_Annealer annealer = new MLSP_Annealer(this.instance, 0);
+			annealer.setAssignment(assignment);
+			annealer.anneal(100, 0.5, 0.05);
+			assignment = annealer.getBestAssignment();
+		}
+		this.instance.storeAssignment(assignment);
+		
+		double endTime = System.currentTimeMillis();
+		
+		this.instance.runningTime = endTime - startTime;
+	}
+}
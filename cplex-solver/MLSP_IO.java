@@ -2,7 +2,8 @@ import java.io.*;
 import java.util.*;
 
 /* This program implements the MILP for the Multi-League Sports Scheduling problem and solves it.
- * For this the MILP_Instance.java file is used.
+ * For this the MILP_Instance.java file is used. Alternatively, the instance can be solved with one of the other solvers
+ * defined in MLSP_Solver.
  */
 
 public class MLSP_IO {
@@ -11,17 +12,34 @@ public class MLSP_IO {
 		
 		Scanner input = new Scanner(System.in);
 		System.out.println("From what file should the data be read?");
-
+		
 		String fileIN = input.next();
 		
-		System.out.println("The solution is outputted to file: CPLEX-Sol-" + fileIN);
-		String fileOUT = "CPLEX-Sol-" + fileIN;
-			
+		System.out.println("Which solver should be used? (CPLEX, SA, PT, TS, LNS, BB, or SA-QUBO1 up to SA-QUBO4)");
+		String solverName = input.next();
+		
 		input.close();
 			
 		try {
 			MLSP_Instance instance = new MLSP_Instance(fileIN);
-			instance.solveMILPforMLSP();
+			
+			// The anytime solvers write their latest improving solution to the output file while they run (at most once a second)
+			String fileOUT = solverName.toUpperCase() + "-Sol-" + fileIN;
+			try(MLSP_SolutionWriter writer = new MLSP_SolutionWriter(instance, fileOUT)) {
+				MLSP_Solver solver;
+				try {
+					solver = MLSP_Solver.byName(solverName, System.nanoTime(), writer);
+				}
+				catch (IllegalArgumentException e) {
+					// Unknown solver name
+					System.out.println(e.getMessage());
+					return;
+				}
+				
+				System.out.println("The solution is outputted to file: " + fileOUT);
+				
+				solver.solve(instance);
+			}
 			instance.outputSolution(fileOUT);
 		}
 		catch (FileNotFoundException e) {
@@ -0,0 +1,66 @@
+/* This program stores an incumbent solution for the MLSP, that is, an assignment of teams to HAPs together with its number of
+ * violations, the time at which it was found and the best lower bound on the number of violations known at that time (0 for the 
+ * heuristics, which do not prove bounds). An incumbent is never changed after it is created, such that it can be shared 
+ * safely between the threads of a parallel solver.
+ */
+
+public class MLSP_Incumbent {
+	
+	final int violations;
+	final int[] assignment;		// The HAP assigned to each team
+	final long elapsedNanos;	// Time since the start of the solver at which the incumbent was found
+	final double bound;			// Lower bound on the number of violations of any solution
+	
+	/**
+	 * Creates an incumbent without a lower bound, the assignment is copied such that later changes by the solver do not affect it
+	 **/
+	public MLSP_Incumbent(int violations, int[] assignment, long elapsedNanos) {
+		this(violations, assignment, elapsedNanos, 0);
+	}
+	
+	/**
+	 * Creates an incumbent with the best lower bound known when it was found
+	 **/
+	public MLSP_Incumbent(int violations, int[] assignment, long elapsedNanos, double bound) {
+		
+		this.violations = violations;
+		this.assignment = assignment.clone();
+		this.elapsedNanos = elapsedNanos;
+		this.bound = bound;
+	}
+	
+	/**
+	 * Returns the number of violations of this incumbent
+	 **/
+	public int getViolations() {
+		return this.violations;
+	}
+	
+	/**
+	 * Returns a copy of the assignment of teams to HAPs of this incumbent
+	 **/
+	public int[] getAssignment() {
+		return this.assignment.clone();
+	}
+	
+	/**
+	 * Returns the lower bound on the number of violations known when this incumbent was found
+	 **/
+	public double getBound() {
+		return this.bound;
+	}
+	
+	/**
+	 * Returns the relative gap between the violations and the bound, computed as CPLEX does: (violations - bound) / violations
+	 **/
+	public double getGap() {
+		return (this.violations - this.bound) / (1e-10 + this.violations);
+	}
+	
+	/**
+	 * Returns the time in milliseconds after the start of the solver at which this incumbent was found
+	 **/
+	public double getElapsedMillis() {
+		return this.elapsedNanos / 1e6;
+	}
+}
@@ -0,0 +1,12 @@
+/* This program defines a listener that is informed by an anytime solver every time it finds a better solution. The incumbent holds
+ * the time at which it was found, so the listener can follow how the quality of the solution improves over time, and can for 
+ * example write intermediate solutions or stop a run once the solution is good enough for the request at hand.
+ */
+
+public interface MLSP_IncumbentListener {
+	
+	/**
+	 * Called with every improving incumbent, on the thread of the solver, so it should return quickly
+	 **/
+	void newIncumbent(MLSP_Incumbent incumbent);
+}
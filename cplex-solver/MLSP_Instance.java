@@ -18,8 +18,10 @@ public class MLSP_Instance {
 	ArrayList<int[]> clubs;		// Clubs are stored as an array list as the number of teams per club varies
 	int[] clubSizes;
 	int[] clubCapacities;
+	int[][] roundCapacities;	// The capacity of each club in each round, equal to clubCapacities unless changed with setCapacity
 	int[][] leagues;
-	int[][] U;
+	int[][] U;					// Shared by all instances with the same HAP set (see MLSP_ModelTemplate), so it is never modified
+	MLSP_ModelTemplate template;
 	
 	// These variables will store the solutions obtained from the MILP
 	double numViolations;
@@ -28,174 +30,812 @@ public class MLSP_Instance {
 	
 	double runningTime;
 	
+	// The (team, HAP) pairs that schedule home games of each club in each round, created when first needed
+	MLSP_ClubRoundIndex clubRoundIndex;
+	
+	// The bit-packed HAP masks and team -> club map used by the heuristics, created when first needed
+	MLSP_BitModel bitModel;
+	
+	// The kernel that evaluates complete assignments, possibly many at once, created when first needed
+	MLSP_ViolationKernel violationKernel;
+	
+	// The clubs and leagues changed since the last solve, which are repaired by resolveIncremental
+	TreeSet<Integer> changedClubs = new TreeSet<Integer>();
+	TreeSet<Integer> changedLeagues = new TreeSet<Integer>();
+	
+	// The variables of the MILP, which are created by buildMILPforMLSP
+	IloNumVar[][] zVar;
+	IloNumVar[][] xVar;
+	
 	/**
 	 * This creates an instance for the MLSP from a data file
 	 **/
 	public MLSP_Instance(String filename) throws FileNotFoundException {
 		
 		// This sets the working directory to the folder where the problem instances of the Data Generator are stored
-		String newWD = "../data";
-		File file = new File(newWD, filename);
-		Scanner input = new Scanner(file);
+		this(new Scanner(new File("../data", filename)));
+	}
+	
+	/**
+	 * This creates an instance for the MLSP from data in the format of the Data Generator, read from the given scanner (for example
+	 * over a string or a network stream). The scanner is closed afterwards.
+	 **/
+	public MLSP_Instance(Scanner input) {
+		
+		MLSP_Metrics.Phase phase = MLSP_Metrics.start("parse");
+		
+		try {
+			this.numTeams = input.nextInt();
+			this.numLeagues = input.nextInt();
+			this.numClubs = input.nextInt();
+			this.leagueSize = input.nextInt();
+			this.numRounds = 2*(leagueSize - 1);
+			
+			this.clubs = new ArrayList<int[]>();
+			this.clubSizes = new int[numClubs];
+			this.clubCapacities = new int[numClubs];
+			this.leagues = new int[numLeagues][leagueSize];
+			this.U = new int[leagueSize][numRounds];
+			
+			this.z = new double[numClubs][numRounds];
+			this.x = new double[numTeams][leagueSize];
+			
+			// The numbering of teams is corrected to take on a value from 0 to (numTeams - 1)
+			// Clubs are stored separately as an array, but as the number of teams per club differ over all clubs,
+			// each array is stored in an array list. 
+			for(int i = 0; i < this.numClubs; i++) {
+				int clubSize = input.nextInt();
+				this.clubSizes[i] = clubSize;
+				int[] teamsInClub = new int[clubSize];
+				this.clubCapacities[i] = input.nextInt();
+				for(int j = 0; j < clubSize; j++) {
+					teamsInClub[j] = (input.nextInt() - 1);
+				}
+				this.clubs.add(teamsInClub);
+			}
+			this.roundCapacities = uniformCapacities(this.clubCapacities, this.numRounds);
+			
+			// Again the numbering of teams is corrected
+			for(int i = 0; i < this.numLeagues; i++) {
+				int leagueNumber = input.nextInt();				// This number in the data is purely for a better overview of the data
+				for(int j = 0; j < this.leagueSize; j++) {
+					this.leagues[i][j] = (input.nextInt() - 1);
+				}
+			}
+			
+			for(int h = 0; h < this.leagueSize; h++) {
+				for(int r = 0; r < this.numRounds; r++) {
+					this.U[h][r] = input.nextInt();
+				}
+			}
+			this.template = MLSP_ModelTemplate.of(this.U);
+			this.U = this.template.U;
+			
+			// Optionally, the capacity of a club differs in some rounds, these are given after U as: (club number) (round number) (capacity)
+			for(int entry = 1; input.hasNextInt(); entry++) {
+				int[] triple = new int[3];
+				for(int k = 0; k < 3; k++) {
+					if(!input.hasNextInt()) {
+						throw new IllegalArgumentException("Round capacity entry " + entry
+								+ " is incomplete, it should be: (club number) (round number) (capacity)");
+					}
+					triple[k] = input.nextInt();
+				}
+				if(triple[0] < 1 || triple[0] > this.numClubs) {
+					throw new IllegalArgumentException("Round capacity entry " + entry + " refers to club " + triple[0]
+							+ ", but the clubs are numbered from 1 to " + this.numClubs);
+				}
+				if(triple[1] < 1 || triple[1] > this.numRounds) {
+					throw new IllegalArgumentException("Round capacity entry " + entry + " refers to round " + triple[1]
+							+ ", but the rounds are numbered from 1 to " + this.numRounds);
+				}
+				if(triple[2] < 0) {
+					throw new IllegalArgumentException("Round capacity entry " + entry + " has negative capacity " + triple[2]);
+				}
+				this.roundCapacities[triple[0] - 1][triple[1] - 1] = triple[2];
+			}
+		}
+		finally {
+			input.close();
+			phase.stop();
+		}
+	}
+	
+	/**
+	 * This creates an instance for the MLSP from data that is already in memory. The clubs and leagues should use the
+	 * corrected team numbering (from 0 to numTeams - 1), just like the fields that are read from a data file.
+	 **/
+	MLSP_Instance(int numTeams, int numLeagues, int numClubs, int leagueSize, ArrayList<int[]> clubs, int[] clubCapacities, int[][] leagues, int[][] U) {
 		
-		this.numTeams = input.nextInt();
-		this.numLeagues = input.nextInt();
-		this.numClubs = input.nextInt();
-		this.leagueSize = input.nextInt();
+		this.numTeams = numTeams;
+		this.numLeagues = numLeagues;
+		this.numClubs = numClubs;
+		this.leagueSize = leagueSize;
 		this.numRounds = 2*(leagueSize - 1);
 		
-		this.clubs = new ArrayList<int[]>();
+		this.clubs = clubs;
 		this.clubSizes = new int[numClubs];
-		this.clubCapacities = new int[numClubs];
-		this.leagues = new int[numLeagues][leagueSize];
-		this.U = new int[leagueSize][numRounds];
+		for(int i = 0; i < numClubs; i++) {
+			this.clubSizes[i] = clubs.get(i).length;
+		}
+		this.clubCapacities = clubCapacities;
+		this.roundCapacities = uniformCapacities(clubCapacities, this.numRounds);
+		this.leagues = leagues;
+		this.template = MLSP_ModelTemplate.of(U);
+		this.U = this.template.U;
 		
 		this.z = new double[numClubs][numRounds];
 		this.x = new double[numTeams][leagueSize];
- 		
-		// The numbering of teams is corrected to take on a value from 0 to (numTeams - 1)
-		// Clubs are stored separately as an array, but as the number of teams per club differ over all clubs,
-		// each array is stored in an array list. 
-		for(int i = 0; i < this.numClubs; i++) {
-			int clubSize = input.nextInt();
-			this.clubSizes[i] = clubSize;
-			int[] teamsInClub = new int[clubSize];
-			this.clubCapacities[i] = input.nextInt();
-			for(int j = 0; j < clubSize; j++) {
-				teamsInClub[j] = (input.nextInt() - 1);
+	}
+	
+	/**
+	 * Returns a copy of the instance without a solution, which can be solved and changed independently of this instance. The 
+	 * teams of the clubs and the HAP set are shared, as they are never modified in place.
+	 **/
+	public MLSP_Instance copy() {
+		
+		int[][] leagues = new int[this.numLeagues][];
+		for(int l = 0; l < this.numLeagues; l++) {
+			leagues[l] = this.leagues[l].clone();
+		}
+		MLSP_Instance copy = new MLSP_Instance(this.numTeams, this.numLeagues, this.numClubs, this.leagueSize, new ArrayList<int[]>(this.clubs),
+				this.clubCapacities.clone(), leagues, this.U);
+		for(int c = 0; c < this.numClubs; c++) {
+			copy.roundCapacities[c] = this.roundCapacities[c].clone();
+		}
+		return copy;
+	}
+	
+	/**
+	 * Returns true if the file name has the form the Data Generator gives its instances, (league size)-(number of leagues)-
+	 * (number of clubs)-(version).txt, which excludes the README and the solution files the QUBO scripts write to the data folder
+	 **/
+	public static boolean isInstanceName(String filename) {
+		return filename.matches("[0-9]+-[0-9]+-[0-9]+-.+\\.txt");
+	}
+	
+	/**
+	 * This loads an instance from the data folder, either from a text file in the format of the Data Generator or from a
+	 * binary file (ending in .bin) created by MLSP_BinaryInstance
+	 **/
+	public static MLSP_Instance load(String filename) throws IOException {
+		
+		if(filename.endsWith(".bin")) {
+			MLSP_Metrics.Phase phase = MLSP_Metrics.start("parse");
+			MLSP_Instance instance = new MLSP_BinaryInstance(filename).toInstance();
+			phase.stop();
+			return instance;
+		}
+		return new MLSP_Instance(filename);
+	}
+	
+	/**
+	 * This method adds the variables, objective and constraints of the MILP to the given model. The variables are kept in zVar 
+	 * and xVar, such that the solution can be read after solving.
+	 **/
+	public void buildMILPforMLSP(IloCplex cplex) throws IloException {
+		
+		MLSP_Metrics.Phase phase = MLSP_Metrics.start("build");
+		
+		// Create the discrete variable that will represent the number of violation for each club in each round
+		IloNumVar[][] zVar = new IloNumVar[this.numClubs][this.numRounds];
+		for(int c = 0; c < this.numClubs; c++) {
+			for(int r = 0; r < this.numRounds; r++) {
+				zVar[c][r] = cplex.numVar(0, Integer.MAX_VALUE, IloNumVarType.Int);			// Automatically applies the zero lower bound on z (4th constraint)
+			}
+		}
+		
+		// Create the binary variable that assigns teams to a certain HAP
+		IloNumVar[][] xVar = new IloNumVar[this.numTeams][this.leagueSize];
+		for(int t = 0; t < this.numTeams; t++) {
+			for(int h = 0; h < this.leagueSize; h++) {
+				xVar[t][h] = cplex.numVar(0, 1, IloNumVarType.Int);							//  Automatically ensures that this variable is binary
 			}
-			this.clubs.add(teamsInClub);
 		}
 		
-		// Again the numbering of teams is corrected
-		for(int i = 0; i < this.numLeagues; i++) {
-			int leagueNumber = input.nextInt();				// This number in the data is purely for a better overview of the data
-			for(int j = 0; j < this.leagueSize; j++) {
-				this.leagues[i][j] = (input.nextInt() - 1);
+		// Adding the objective, which is the total number of violations over all clubs and rounds
+		IloLinearNumExpr objective = cplex.linearNumExpr();
+		for(int c = 0; c < this.numClubs; c++) {
+			for(int r = 0; r < this.numRounds; r++) {
+				objective.addTerm(zVar[c][r], 1);
 			}
 		}
+		cplex.addMinimize(objective);
 		
-		for(int h = 0; h < this.leagueSize; h++) {
+		// Adding first constraint which states that in a league l, only one team can be assigned to a certain HAP h, and second 
+		// constraint which states that each team t can be assigned to only one HAP h. The rows of both constraints are the same 
+		// for every league and are taken from the template, over the variables of the league (position i, HAP h) at i*leagueSize + h.
+		IloNumVar[] leagueVars = new IloNumVar[this.leagueSize * this.leagueSize];
+		IloNumVar[] row = new IloNumVar[this.leagueSize];
+		for(int l = 0; l < this.numLeagues; l++) {
+			for(int i = 0; i < this.leagueSize; i++) {
+				System.arraycopy(xVar[this.leagues[l][i]], 0, leagueVars, i * this.leagueSize, this.leagueSize);
+			}
+			for(int h = 0; h < this.leagueSize; h++) {
+				for(int i = 0; i < this.leagueSize; i++) {
+					row[i] = leagueVars[this.template.hapRows[h][i]];
+				}
+				cplex.addEq(cplex.scalProd(this.template.ones, row), 1);
+			}
+			for(int i = 0; i < this.leagueSize; i++) {
+				for(int h = 0; h < this.leagueSize; h++) {
+					row[h] = leagueVars[this.template.teamRows[i][h]];
+				}
+				cplex.addEq(cplex.scalProd(this.template.ones, row), 1);
+			}
+		}
+			
+		// Adding third constraint which states that the discrete variable z (for each club c in each round r) should be greater or equal to 
+		// the difference between the number of games scheduled to take place at club c and its capacity. Note that the fourth constraint which states that
+		// z (for each club c in each round r) is non-negative is automatically applied by the definition of the variable earlier.
+		// Observe that the inequality is rewritten such that all decision variables are on the LHS of the inequality.
+		// Only the pairs (t, h) with U[h][r] = 1 have a non-zero coefficient, these are taken from the club/round index.
+		MLSP_ClubRoundIndex index = getClubRoundIndex();
+		for(int c = 0; c < this.numClubs; c++) {
 			for(int r = 0; r < this.numRounds; r++) {
-				this.U[h][r] = input.nextInt();
+				IloLinearNumExpr constraint3 = cplex.linearNumExpr();
+				constraint3.addTerm(zVar[c][r], 1);
+				for(int k = index.begin(c, r); k < index.end(c, r); k++) {
+					constraint3.addTerm(xVar[index.teams[k]][index.haps[k]], -1);			// Negative as it is brought to the LHS
+				}
+				cplex.addGe(constraint3, -this.roundCapacities[c][r]);
 			}
 		}
 		
-		input.close();
+		this.zVar = zVar;
+		this.xVar = xVar;
+		
+		MLSP_Metrics.count("milp.variables", this.numClubs * this.numRounds + this.numTeams * this.leagueSize);
+		MLSP_Metrics.count("milp.constraints", 2 * this.numLeagues * this.leagueSize + this.numClubs * this.numRounds);
+		MLSP_Metrics.count("milp.nonZeros", 2L * this.numTeams * this.leagueSize + this.numClubs * this.numRounds + index.size());
+		phase.stop();
 	}
 	
 	/**
 	 * This method solves the instance given from the data file using the MILP as defined by Davari et al. (2020)
 	 **/
 	public void solveMILPforMLSP() {
+		solveMILPforMLSP(0, 0, null);
+	}
+	
+	/**
+	 * This method solves the instance using the MILP, where CPLEX stops when the time limit has passed or when the relative gap 
+	 * between the best solution and the bound is at most gapTolerance. A time limit or tolerance of 0 uses the default of CPLEX 
+	 * (no time limit and a gap of 1e-4). Every new incumbent found by CPLEX is passed to the listener (if any), together with the
+	 * bound at that time, such that callers can use (or write) the best schedule before the search ends. The best solution found is 
+	 * stored in the instance, and the method returns true if it was proven optimal.
+	 **/
+	public boolean solveMILPforMLSP(long timeLimitMillis, double gapTolerance, MLSP_IncumbentListener listener) {
 		
 		double startTime = System.currentTimeMillis();
+		boolean optimal = false;
 		try {
 			
 			IloCplex cplex = new IloCplex();
 			cplex.setOut(null);
+			if(timeLimitMillis > 0) {
+				cplex.setParam(IloCplex.Param.TimeLimit, timeLimitMillis / 1000.0);
+			}
+			if(gapTolerance > 0) {
+				cplex.setParam(IloCplex.Param.MIP.Tolerances.MIPGap, gapTolerance);
+			}
 			
-			// Create the discrete variable that will represent the number of violation for each club in each round
-			IloNumVar[][] zVar = new IloNumVar[this.numClubs][this.numRounds];
-			for(int c = 0; c < this.numClubs; c++) {
-				for(int r = 0; r < this.numRounds; r++) {
-					zVar[c][r] = cplex.numVar(0, Integer.MAX_VALUE, IloNumVarType.Int);			// Automatically applies the zero lower bound on z (4th constraint)
-				}
+			buildMILPforMLSP(cplex);
+			
+			if(listener != null) {
+				long start = System.nanoTime();
+				cplex.use(new IloCplex.IncumbentCallback() {
+					protected void main() throws IloException {
+						MLSP_Metrics.count("cplex.incumbents", 1);
+						int[] assignment = new int[numTeams];
+						for(int t = 0; t < numTeams; t++) {
+							double[] row = getValues(xVar[t]);
+							for(int h = 0; h < leagueSize; h++) {
+								if(row[h] > 0.5) {
+									assignment[t] = h;
+								}
+							}
+						}
+						int violations = (int) Math.round(getObjValue());
+						listener.newIncumbent(new MLSP_Incumbent(violations, assignment, System.nanoTime() - start, getBestObjValue()));
+					}
+				});
 			}
 			
-			// Create the binary variable that assigns teams to a certain HAP
-			IloNumVar[][] xVar = new IloNumVar[this.numTeams][this.leagueSize];
-			for(int t = 0; t < this.numTeams; t++) {
-				for(int h = 0; h < this.leagueSize; h++) {
-					xVar[t][h] = cplex.numVar(0, 1, IloNumVarType.Int);							//  Automatically ensures that this variable is binary
+			// Solve MILP and save values, if a solution was found within the time limit
+			MLSP_Metrics.Phase phase = MLSP_Metrics.start("solve");
+			boolean solved = cplex.solve();
+			phase.stop();
+			if(solved) {
+				phase = MLSP_Metrics.start("extract");
+				this.numViolations = cplex.getObjValue();
+				
+				for(int c = 0; c < this.numClubs; c++) {
+					for(int r = 0; r < this.numRounds; r++) {
+						this.z[c][r] = cplex.getValue(this.zVar[c][r]);
+					}
+				}
+				
+				for(int t = 0; t < this.numTeams; t++) {
+					for(int h = 0; h < this.leagueSize; h++) {
+						this.x[t][h] = cplex.getValue(this.xVar[t][h]);
+					}
 				}
+				optimal = cplex.getStatus() == IloCplex.Status.Optimal;
+				phase.stop();
+				MLSP_Metrics.gauge("cplex.bound", cplex.getBestObjValue());
+				MLSP_Metrics.gauge("cplex.gap", cplex.getMIPRelativeGap());
+			}
+			else {
+				System.out.println("CPLEX found no solution within the time limit.");
 			}
 			
-			// Adding the objective, which is the total number of violations over all clubs and rounds
-			IloLinearNumExpr objective = cplex.linearNumExpr();
-			for(int c = 0; c < this.numClubs; c++) {
-				for(int r = 0; r < this.numRounds; r++) {
-					objective.addTerm(zVar[c][r], 1);
+			cplex.close();
+		}
+		
+		catch (IloException exc) {
+			exc.printStackTrace();
+		}	
+		double endTime = System.currentTimeMillis();
+		
+		this.runningTime = endTime - startTime;
+		return optimal;
+	}
+	
+	/**
+	 * This method solves the instance using the simulated annealing heuristic from MLSP_Annealer, with the same number
+	 * of sweeps per read as the Python samplers (the best of numReads independent reads is kept).
+	 **/
+	public void solveSAforMLSP(long seed, int numSweeps, int numReads) {
+		
+		double startTime = System.currentTimeMillis();
+		
+		MLSP_Metrics.Phase phase = MLSP_Metrics.start("solve");
+		long start = System.nanoTime();
+		long evaluated = 0;
+		long accepted = 0;
+		int[] bestAssignment = null;
+		int bestViolations = Integer.MAX_VALUE;
+		for(int read = 0; read < numReads && bestViolations > 0; read++) {
+			MLSP_Annealer annealer = new MLSP_Annealer(this, seed + read);
+			int found = annealer.anneal(numSweeps, 3.0, 0.05);
+			if(found < bestViolations) {
+				bestViolations = found;
+				bestAssignment = annealer.getBestAssignment();
+			}
+			evaluated += annealer.movesEvaluated;
+			accepted += annealer.movesAccepted;
+		}
+		MLSP_Metrics.moves("sa", evaluated, accepted, System.nanoTime() - start);
+		phase.stop();
+		storeAssignment(bestAssignment);
+		
+		double endTime = System.currentTimeMillis();
+		
+		this.runningTime = endTime - startTime;
+	}
+	
+	/**
+	 * This method solves the instance by running numReplicas annealing replicas in parallel (see MLSP_ParallelSolver), until
+	 * the time limit has passed or a schedule without violations is found.
+	 **/
+	public void solveParallelForMLSP(int numReplicas, long timeLimitMillis, long seed) {
+		
+		double startTime = System.currentTimeMillis();
+		
+		MLSP_ParallelSolver solver = new MLSP_ParallelSolver(this, numReplicas, seed);
+		solver.setStopCondition(timeLimitMillis, 0);
+		MLSP_Metrics.Phase phase = MLSP_Metrics.start("solve");
+		MLSP_Incumbent best = solver.solve();
+		phase.stop();
+		storeAssignment(best.assignment);
+		
+		double endTime = System.currentTimeMillis();
+		
+		this.runningTime = endTime - startTime;
+	}
+	
+	/**
+	 * This method solves the instance as QUBO with the given encoding and sampler. The samples need not satisfy the assignment
+	 * constraints, so in every league the teams without exactly one HAP, or with a HAP that an earlier team of the league already
+	 * has, get the unused HAPs of the league in increasing order. Because of the penalties and the repair, the sample with the
+	 * lowest energy need not have the fewest violations, so all samples are repaired and evaluated in batches (see 
+	 * MLSP_ViolationKernel), and the best is stored. The number of samples is counted as qubo.samples, and the number of teams 
+	 * changed by the repair of the stored sample as qubo.repairedTeams.
+	 **/
+	public void solveQUBOforMLSP(QuboEncoding encoding, QuboSampler sampler) {
+		
+		double startTime = System.currentTimeMillis();
+		
+		long start = System.nanoTime();
+		QuboMatrix qubo = encoding.build(this);
+		QuboSize size = new QuboSize(encoding.getName(), qubo, encoding.numAncillas(this), System.nanoTime() - start);
+		MLSP_Metrics.count("qubo.ancillas", size.numAncillas);
+		MLSP_Metrics.gauge("qubo.coefficientRange", size.getCoefficientRange());
+		MLSP_Metrics.Phase phase = MLSP_Metrics.start("solve");
+		List<byte[]> samples = sampler.sampleAll(qubo);
+		phase.stop();
+		
+		int[][] assignments = new int[samples.size()][];
+		int[] repaired = new int[samples.size()];
+		for(int s = 0; s < samples.size(); s++) {
+			assignments[s] = encoding.decode(samples.get(s), this);
+			repaired[s] = repairAssignment(assignments[s]);
+		}
+		int[] violations = evaluateAssignments(assignments);
+		int best = 0;
+		for(int s = 1; s < samples.size(); s++) {
+			if(violations[s] < violations[best]) {
+				best = s;
+			}
+		}
+		MLSP_Metrics.count("qubo.samples", samples.size());
+		MLSP_Metrics.count("qubo.repairedTeams", repaired[best]);
+		storeAssignment(assignments[best]);
+		
+		double endTime = System.currentTimeMillis();
+		
+		this.runningTime = endTime - startTime;
+	}
+	
+	/**
+	 * This method gives the teams without a HAP (-1), or with a HAP that an earlier team of their league already has, the unused
+	 * HAPs of their league in increasing order, and returns the number of teams changed
+	 **/
+	int repairAssignment(int[] hapOfTeam) {
+		
+		int repaired = 0;
+		for(int l = 0; l < this.numLeagues; l++) {
+			boolean[] used = new boolean[this.leagueSize];
+			for(int t : this.leagues[l]) {
+				if(hapOfTeam[t] >= 0 && !used[hapOfTeam[t]]) {
+					used[hapOfTeam[t]] = true;
+				}
+				else {
+					hapOfTeam[t] = -1;
 				}
 			}
-			cplex.addMinimize(objective);
-			
-			// Adding first constraint which states that in a league l, only one team can be assigned to a certain HAP h.
-			for(int l = 0; l < this.numLeagues; l++) {
-				for(int h = 0; h < this.leagueSize; h++) {
-					IloLinearNumExpr constraint1 = cplex.linearNumExpr();
-					for(int i = 0; i < this.leagueSize; i++) {
-						int t = this.leagues[l][i];
-						constraint1.addTerm(xVar[t][h], 1);
+			int next = 0;
+			for(int t : this.leagues[l]) {
+				if(hapOfTeam[t] < 0) {
+					while(used[next]) {
+						next++;
 					}
-					cplex.addEq(constraint1, 1);
+					hapOfTeam[t] = next;
+					used[next] = true;
+					repaired++;
 				}
 			}
-			
-			// Adding second constraint which states that each team t can be assigned to only one HAP h
-			for(int l = 0; l < this.numLeagues; l++) {
-				for(int i = 0; i < this.leagueSize; i++) {
-					int t = this.leagues[l][i];
-					IloLinearNumExpr constraint2 = cplex.linearNumExpr();
-					for(int h = 0; h < this.leagueSize; h++) {
-						constraint2.addTerm(xVar[t][h], 1);
-					}
-					cplex.addEq(constraint2, 1);
+		}
+		return repaired;
+	}
+	
+	/**
+	 * This method solves the instance with the tabu search of MLSP_TabuSearch, starting from the greedy construction, until the time
+	 * limit has passed or a schedule is found whose violations equal the Lagrangian lower bound (computed first, in at most a tenth
+	 * of the time limit). If destroyedLeagues is positive, the search is perturbed by destroying and repairing that many leagues 
+	 * whenever it stagnates. Every improving solution is passed to the listener (if any), together with the lower bound.
+	 **/
+	public void solveTSforMLSP(long timeLimitMillis, int destroyedLeagues, long seed, MLSP_IncumbentListener listener) {
+		
+		double startTime = System.currentTimeMillis();
+		
+		int bound = computeLowerBound(timeLimitMillis / 10);
+		MLSP_TabuSearch solver = new MLSP_TabuSearch(this, seed);
+		solver.setStopCondition(timeLimitMillis - (long) (System.currentTimeMillis() - startTime), 0);
+		solver.setLowerBound(bound);
+		solver.setLargeNeighbourhood(destroyedLeagues, 200);
+		if(listener != null) {
+			solver.addListener(listener);
+		}
+		MLSP_Metrics.Phase phase = MLSP_Metrics.start("solve");
+		long start = System.nanoTime();
+		MLSP_Incumbent best = solver.solve();
+		MLSP_Metrics.moves("ts", solver.state.movesEvaluated, solver.state.movesAccepted, System.nanoTime() - start);
+		MLSP_Metrics.count("ts.iterations", solver.getIterations());
+		MLSP_Metrics.count("ts.perturbations", solver.getPerturbations());
+		phase.stop();
+		storeAssignment(best.assignment);
+		
+		double endTime = System.currentTimeMillis();
+		
+		this.runningTime = endTime - startTime;
+	}
+	
+	/**
+	 * Returns a lower bound on the number of violations from the Lagrangian relaxation of the capacity constraints (see 
+	 * MLSP_LagrangianBound), which is computed in at most the given time
+	 **/
+	public int computeLowerBound(long timeLimitMillis) {
+		
+		MLSP_Metrics.Phase phase = MLSP_Metrics.start("bound");
+		MLSP_LagrangianBound relaxation = new MLSP_LagrangianBound(this);
+		int bound = relaxation.solve(timeLimitMillis);
+		MLSP_Metrics.count("bound.iterations", relaxation.getIterations());
+		MLSP_Metrics.gauge("bound.value", bound);
+		phase.stop();
+		return bound;
+	}
+	
+	/**
+	 * This method solves the instance exactly with the branch-and-bound of MLSP_BranchAndBound, which does not need CPLEX. 
+	 * It returns true if optimality was proven within the time limit, otherwise the best solution found is stored.
+	 **/
+	public boolean solveBBforMLSP(long timeLimitMillis) {
+		
+		double startTime = System.currentTimeMillis();
+		
+		MLSP_BranchAndBound solver = new MLSP_BranchAndBound(this);
+		MLSP_Metrics.Phase phase = MLSP_Metrics.start("solve");
+		solver.solve(timeLimitMillis);
+		MLSP_Metrics.count("bb.nodes", solver.getNodes());
+		phase.stop();
+		storeAssignment(solver.getBestAssignment());
+		
+		double endTime = System.currentTimeMillis();
+		
+		this.runningTime = endTime - startTime;
+		return solver.isProvenOptimal();
+	}
+	
+	/**
+	 * Returns the capacity of every club in every round, where each club has the same capacity in all rounds
+	 **/
+	static int[][] uniformCapacities(int[] clubCapacities, int numRounds) {
+		
+		int[][] capacities = new int[clubCapacities.length][numRounds];
+		for(int c = 0; c < clubCapacities.length; c++) {
+			Arrays.fill(capacities[c], clubCapacities[c]);
+		}
+		return capacities;
+	}
+	
+	/**
+	 * This method changes the capacity of a club in the rounds fromRound up to and including toRound (rounds numbered from 0)
+	 **/
+	public void setCapacity(int club, int fromRound, int toRound, int capacity) {
+		
+		for(int r = fromRound; r <= toRound; r++) {
+			this.roundCapacities[club][r] = capacity;
+		}
+		this.changedClubs.add(club);
+	}
+	
+	/**
+	 * This method moves a team from its current club to another club
+	 **/
+	public void moveTeam(int team, int toClub) {
+		
+		int fromClub = getTeamClubs()[team];
+		if(fromClub == toClub) {
+			return;
+		}
+		if(fromClub >= 0) {
+			int[] oldClub = this.clubs.get(fromClub);
+			int[] newTeams = new int[oldClub.length - 1];
+			int k = 0;
+			for(int t : oldClub) {
+				if(t != team) {
+					newTeams[k++] = t;
 				}
 			}
-				
-			// Adding third constraint which states that the discrete variable z (for each club c in each round r) should be greater or equal to 
-			// the difference between the number of games scheduled to take place at club c and its capacity. Note that the fourth constraint which states that
-			// z (for each club c in each round r) is non-negative is automatically applied by the definition of the variable earlier.
-			// Observe that the inequality is rewritten such that all decision variables are on the LHS of the inequality.
-			for(int c = 0; c < this.numClubs; c++) {
-				for(int r = 0; r < this.numRounds; r++) {
-					IloLinearNumExpr constraint3 = cplex.linearNumExpr();
-					constraint3.addTerm(zVar[c][r], 1);
-					int[] club = this.clubs.get(c);
-					for(int i = 0; i < club.length; i++) {
-						int t = club[i];
-						for(int h = 0; h < this.leagueSize; h++) {
-							constraint3.addTerm(xVar[t][h], -this.U[h][r]);			// Negative as it is brought to the LHS
-						}
-					}
-					cplex.addGe(constraint3, -this.clubCapacities[c]);
+			this.clubs.set(fromClub, newTeams);
+			this.clubSizes[fromClub]--;
+			this.changedClubs.add(fromClub);
+		}
+		int[] newClub = Arrays.copyOf(this.clubs.get(toClub), this.clubSizes[toClub] + 1);
+		newClub[newClub.length - 1] = team;
+		this.clubs.set(toClub, newClub);
+		this.clubSizes[toClub]++;
+		this.changedClubs.add(toClub);
+		this.clubRoundIndex = null;
+		this.bitModel = null;
+		this.violationKernel = null;
+	}
+	
+	/**
+	 * This method lets two teams of different leagues swap their places, such that each team joins the other league. If a solution
+	 * is stored, the teams also swap their HAPs, so every league still uses every HAP once.
+	 **/
+	public void swapLeagueMembers(int teamA, int teamB) {
+		
+		int[] positionA = leaguePosition(teamA);
+		int[] positionB = leaguePosition(teamB);
+		this.leagues[positionA[0]][positionA[1]] = teamB;
+		this.leagues[positionB[0]][positionB[1]] = teamA;
+		
+		double[] temp = this.x[teamA];
+		this.x[teamA] = this.x[teamB];
+		this.x[teamB] = temp;
+		
+		this.changedLeagues.add(positionA[0]);
+		this.changedLeagues.add(positionB[0]);
+	}
+	
+	/**
+	 * Returns the league of a team and its position within the league
+	 **/
+	int[] leaguePosition(int team) {
+		
+		for(int l = 0; l < this.numLeagues; l++) {
+			for(int i = 0; i < this.leagueSize; i++) {
+				if(this.leagues[l][i] == team) {
+					return new int[] {l, i};
 				}
 			}
-			
-			// Solve MILP and save values 
-			cplex.solve();
-			
-			this.numViolations = cplex.getObjValue();
-			
-			for(int c = 0; c < this.numClubs; c++) {
-				for(int r = 0; r < this.numRounds; r++) {
-					this.z[c][r] = cplex.getValue(zVar[c][r]);
+		}
+		throw new IllegalArgumentException("Team " + team + " is not part of any league");
+	}
+	
+	/**
+	 * Returns the assignment of teams to HAPs (team -> HAP) of the stored solution, or null if no solution is stored
+	 **/
+	public int[] getAssignment() {
+		
+		int[] assignment = new int[this.numTeams];
+		for(int t = 0; t < this.numTeams; t++) {
+			assignment[t] = -1;
+			for(int h = 0; h < this.leagueSize; h++) {
+				if(this.x[t][h] > 0.5) {
+					assignment[t] = h;
 				}
 			}
-			
-			for(int t = 0; t < this.numTeams; t++) {
-				for(int h = 0; h < this.leagueSize; h++) {
-					this.x[t][h] = cplex.getValue(xVar[t][h]);
+			if(assignment[t] < 0) {
+				return null;
+			}
+		}
+		return assignment;
+	}
+	
+	/**
+	 * This method repairs the stored solution after changes made with setCapacity, moveTeam and swapLeagueMembers. Starting from 
+	 * the stored assignment, only the changed leagues and the leagues with a team in a changed club are re-optimised (with a short
+	 * low-temperature annealing run), while all other teams keep their HAP. Without a stored solution the whole instance is solved.
+	 **/
+	public void resolveIncremental(long seed) {
+		
+		double startTime = System.currentTimeMillis();
+		
+		int[] assignment = getAssignment();
+		if(assignment == null) {
+			solveSAforMLSP(seed, 1000, 1);
+		}
+		else {
+			TreeSet<Integer> affected = new TreeSet<Integer>(this.changedLeagues);
+			int[] teamClub = getTeamClubs();
+			for(int l = 0; l < this.numLeagues; l++) {
+				for(int t : this.leagues[l]) {
+					if(teamClub[t] >= 0 && this.changedClubs.contains(teamClub[t])) {
+						affected.add(l);
+					}
 				}
 			}
 			
-			cplex.close();
+			MLSP_Metrics.Phase phase = MLSP_Metrics.start("solve");
+			MLSP_Annealer annealer = new MLSP_Annealer(this, seed);
+			annealer.setAssignment(assignment);
+			annealer.restrictToLeagues(affected.stream().mapToInt(Integer::intValue).toArray());
+			annealer.anneal(200, 0.5, 0.05);
+			MLSP_Metrics.count("incremental.leagues", affected.size());
+			phase.stop();
+			storeAssignment(annealer.getBestAssignment());
 		}
+		this.changedClubs.clear();
+		this.changedLeagues.clear();
 		
-		catch (IloException exc) {
-			exc.printStackTrace();
-		}	
 		double endTime = System.currentTimeMillis();
 		
 		this.runningTime = endTime - startTime;
 	}
 	
+	/**
+	 * Returns the index of (team, HAP) pairs per club and round, which is built on first use
+	 **/
+	public MLSP_ClubRoundIndex getClubRoundIndex() {
+		
+		if(this.clubRoundIndex == null) {
+			this.clubRoundIndex = new MLSP_ClubRoundIndex(this);
+		}
+		return this.clubRoundIndex;
+	}
+	
+	/**
+	 * Returns the bit-packed model of the instance, which is built on first use
+	 **/
+	public MLSP_BitModel getBitModel() {
+		
+		if(this.bitModel == null) {
+			this.bitModel = new MLSP_BitModel(this);
+		}
+		return this.bitModel;
+	}
+	
+	/**
+	 * Returns the kernel that evaluates complete assignments, which is built on first use
+	 **/
+	public MLSP_ViolationKernel getViolationKernel() {
+		
+		if(this.violationKernel == null) {
+			this.violationKernel = new MLSP_ViolationKernel(this);
+		}
+		return this.violationKernel;
+	}
+	
+	/**
+	 * Returns the number of violations of every assignment of teams to HAPs, evaluated in batches by MLSP_ViolationKernel
+	 **/
+	public int[] evaluateAssignments(int[][] assignments) {
+		return getViolationKernel().evaluate(assignments);
+	}
+	
+	/**
+	 * Returns the number of violations of the solution stored in the instance
+	 **/
+	public double getNumViolations() {
+		return this.numViolations;
+	}
+	
+	/**
+	 * Returns for each team the index of the club it belongs to, or -1 if the team is not part of any club
+	 **/
+	public int[] getTeamClubs() {
+		
+		int[] teamClub = new int[this.numTeams];
+		Arrays.fill(teamClub, -1);
+		for(int c = 0; c < this.numClubs; c++) {
+			for(int t : this.clubs.get(c)) {
+				teamClub[t] = c;
+			}
+		}
+		return teamClub;
+	}
+	
+	/**
+	 * This method stores an assignment of teams to HAPs (given as team -> HAP) as the solution of the instance, that is,
+	 * it fills x, z and the number of violations in the same way as they are obtained from the MILP. The home games are counted
+	 * with the bit-packed model, or with the club/round index if there are more rounds than the model supports.
+	 **/
+	public void storeAssignment(int[] hapOfTeam) {
+		
+		MLSP_Metrics.Phase phase = MLSP_Metrics.start("extract");
+		
+		for(int t = 0; t < this.numTeams; t++) {
+			Arrays.fill(this.x[t], 0);
+			this.x[t][hapOfTeam[t]] = 1;
+		}
+		
+		this.numViolations = 0;
+		if(this.numRounds <= MLSP_BitModel.MAX_ROUNDS) {
+			MLSP_BitModel model = getBitModel();
+			int[] homeCount = model.newHomeCounts();
+			model.countHomeGames(hapOfTeam, homeCount);
+			for(int c = 0; c < this.numClubs; c++) {
+				for(int r = 0; r < this.numRounds; r++) {
+					this.z[c][r] = model.violations(homeCount, c, r);
+					this.numViolations += this.z[c][r];
+				}
+			}
+		}
+		else {
+			MLSP_ClubRoundIndex index = getClubRoundIndex();
+			for(int c = 0; c < this.numClubs; c++) {
+				for(int r = 0; r < this.numRounds; r++) {
+					int homeGames = index.homeGames(c, r, hapOfTeam);
+					this.z[c][r] = Math.max(0, homeGames - this.roundCapacities[c][r]);
+					this.numViolations += this.z[c][r];
+				}
+			}
+		}
+		phase.stop();
+	}
+	
 	/**
 	 * This method outputs the solution found to the file inputed by the user.
 	 **/
 	public void outputSolution(String filename) throws IOException {
 		
+		MLSP_Metrics.Phase phase = MLSP_Metrics.start("output");
+		
 		String newWD = "../";
 		File file = new File(newWD, filename);
 		
@@ -228,6 +868,7 @@ public class MLSP_Instance {
 		}
 		
 		bw.close();
+		phase.stop();
 	}
 	
 }
@@ -0,0 +1,295 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/* This program computes a lower bound on the number of violations of an MLSP instance without CPLEX, such that the heuristics can
+ * report their gap and stop as soon as their solution is proven optimal. The capacity constraints of the MILP (constraint 3,
+ * z[c][r] >= sum of x over the teams of club c playing at home in round r - capacity[c][r]) are relaxed with a multiplier
+ * mu[c][r] in [0, 1] each. The objective of the relaxation is then
+ *
+ *   L(mu) = sum over leagues of min over assignments of sum over teams t of cost(club of t, HAP of t) - sum of mu[c][r]*capacity[c][r]
+ *
+ * where cost(c, h) is the sum of mu[c][r] over the rounds r in which HAP h plays at home (z drops out, as its coefficient 1 - mu is
+ * not negative). Every league is an assignment problem, which is solved with the Hungarian method in O(leagueSize^3), and the
+ * leagues are solved in parallel. The multipliers are improved with subgradient steps of the Polyak type towards the best known
+ * number of violations. Each relaxed solution is itself a valid assignment, so its violations give the upper bound used in the steps.
+ * As the number of violations is integer, the bound is the best value of L(mu) rounded up.
+ */
+
+public class MLSP_LagrangianBound {
+	
+	MLSP_Instance instance;
+	MLSP_ViolationKernel kernel;
+	int leagueSize;
+	int numRounds;
+	int[] teamClub;				// The club each team belongs to, or -1 if the team belongs to no club
+	
+	double[] mu;				// The multiplier of club c in round r at position c*numRounds + r
+	double[] hapCost;			// cost(c, h) at position c*leagueSize + h
+	double[] leagueCost;		// The cost of the optimal assignment of each league
+	int[] relaxedHap;			// The HAP of every team in the solution of the relaxation
+	int[] homeCount;			// The home games of club c in round r in the relaxed solution, at position c*numRounds + r
+	
+	double bestValue = 0;		// The best value of L(mu), L(0) = 0
+	int upperBound = Integer.MAX_VALUE;
+	int[] bestAssignment;
+	int iterations;
+	
+	int numThreads = Runtime.getRuntime().availableProcessors();
+	int maxIterations = 1000;
+	int halvingInterval = 20;	// The step size is halved after this many iterations without a better bound
+	
+	/**
+	 * Creates the relaxation for the given instance, with all multipliers 0
+	 **/
+	public MLSP_LagrangianBound(MLSP_Instance instance) {
+		
+		this.instance = instance;
+		this.kernel = instance.getViolationKernel();
+		this.leagueSize = instance.leagueSize;
+		this.numRounds = instance.numRounds;
+		this.teamClub = instance.getTeamClubs();
+		
+		this.mu = new double[instance.numClubs * this.numRounds];
+		this.hapCost = new double[instance.numClubs * this.leagueSize];
+		this.leagueCost = new double[instance.numLeagues];
+		this.relaxedHap = new int[instance.numTeams];
+		this.homeCount = this.kernel.newHomeCounts();
+	}
+	
+	/**
+	 * This method sets the number of threads over which the leagues are divided
+	 **/
+	public void setThreads(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+	
+	/**
+	 * This method sets the maximum number of subgradient iterations
+	 **/
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+	
+	/**
+	 * This method sets the number of violations of a known solution, which improves the step sizes and lets the search stop as soon
+	 * as the bound reaches it
+	 **/
+	public void setUpperBound(int upperBound) {
+		this.upperBound = Math.min(this.upperBound, upperBound);
+	}
+	
+	/**
+	 * This method improves the multipliers until the bound reaches the upper bound, the step size becomes negligible, or the
+	 * iteration or time limit is reached. It returns the lower bound on the number of violations.
+	 **/
+	public int solve(long timeLimitMillis) {
+		
+		long deadline = System.currentTimeMillis() + timeLimitMillis;
+		ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+		double stepSize = 2;
+		int lastImprovement = 0;
+		double[] subgradient = new double[this.mu.length];
+		
+		try {
+			while(this.iterations < this.maxIterations && getBound() < this.upperBound && stepSize > 1e-3
+					&& System.currentTimeMillis() < deadline) {
+				this.iterations++;
+				double value = evaluate(pool);
+				if(value > this.bestValue + 1e-9) {
+					this.bestValue = value;
+					lastImprovement = this.iterations;
+				}
+				else if(this.iterations - lastImprovement >= this.halvingInterval) {
+					stepSize /= 2;
+					lastImprovement = this.iterations;
+				}
+				
+				// The subgradient is the excess of home games, without the parts that would move a multiplier out of [0, 1]
+				this.kernel.countHomeGames(this.relaxedHap, this.homeCount);
+				int violations = 0;
+				double norm = 0;
+				for(int c = 0; c < this.instance.numClubs; c++) {
+					for(int r = 0; r < this.numRounds; r++) {
+						int key = c * this.numRounds + r;
+						int excess = this.homeCount[key] - this.instance.roundCapacities[c][r];
+						violations += Math.max(0, excess);
+						subgradient[key] = (this.mu[key] <= 0 && excess < 0) || (this.mu[key] >= 1 && excess > 0) ? 0 : excess;
+						norm += subgradient[key] * subgradient[key];
+					}
+				}
+				if(violations < this.upperBound || this.bestAssignment == null) {
+					this.upperBound = Math.min(this.upperBound, violations);
+					this.bestAssignment = this.relaxedHap.clone();
+				}
+				if(norm == 0) {
+					// The multipliers are optimal
+					break;
+				}
+				
+				double step = stepSize * (this.upperBound - value) / norm;
+				for(int key = 0; key < this.mu.length; key++) {
+					this.mu[key] = Math.min(1, Math.max(0, this.mu[key] + step * subgradient[key]));
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		finally {
+			pool.shutdown();
+		}
+		return getBound();
+	}
+	
+	/**
+	 * Solves the relaxation for the current multipliers: relaxedHap is set to the optimal assignment and L(mu) is returned
+	 **/
+	double evaluate(ExecutorService pool) throws InterruptedException, ExecutionException {
+		
+		double constant = 0;
+		for(int c = 0; c < this.instance.numClubs; c++) {
+			for(int h = 0; h < this.leagueSize; h++) {
+				double cost = 0;
+				for(int r = 0; r < this.numRounds; r++) {
+					cost += this.instance.U[h][r] * this.mu[c * this.numRounds + r];
+				}
+				this.hapCost[c * this.leagueSize + h] = cost;
+			}
+			for(int r = 0; r < this.numRounds; r++) {
+				constant += this.mu[c * this.numRounds + r] * this.instance.roundCapacities[c][r];
+			}
+		}
+		
+		// Every thread solves a contiguous range of leagues
+		int numLeagues = this.instance.numLeagues;
+		int numTasks = Math.min(this.numThreads, numLeagues);
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for(int i = 0; i < numTasks; i++) {
+			int from = (int) ((long) numLeagues * i / numTasks);
+			int to = (int) ((long) numLeagues * (i + 1) / numTasks);
+			tasks.add(Executors.callable(() -> solveLeagues(from, to)));
+		}
+		for(Future<Object> future : pool.invokeAll(tasks)) {
+			future.get();
+		}
+		
+		double value = -constant;
+		for(int l = 0; l < numLeagues; l++) {
+			value += this.leagueCost[l];
+		}
+		return value;
+	}
+	
+	/**
+	 * Solves the assignment problems of the leagues from up to (but not including) to with the Hungarian method
+	 **/
+	void solveLeagues(int from, int to) {
+		
+		int n = this.leagueSize;
+		double[] cost = new double[n * n];
+		double[] rowPotential = new double[n + 1];
+		double[] colPotential = new double[n + 1];
+		double[] minSlack = new double[n + 1];
+		int[] rowOfCol = new int[n + 1];		// The team (from 1) assigned to each HAP (from 1), 0 if none
+		int[] previousCol = new int[n + 1];
+		boolean[] visited = new boolean[n + 1];
+		
+		for(int l = from; l < to; l++) {
+			int[] league = this.instance.leagues[l];
+			for(int i = 0; i < n; i++) {
+				int c = this.teamClub[league[i]];
+				if(c >= 0) {
+					System.arraycopy(this.hapCost, c * n, cost, i * n, n);
+				}
+				else {
+					// A team without a club never causes violations
+					Arrays.fill(cost, i * n, (i + 1) * n, 0);
+				}
+			}
+			
+			Arrays.fill(rowPotential, 0);
+			Arrays.fill(colPotential, 0);
+			Arrays.fill(rowOfCol, 0);
+			for(int i = 1; i <= n; i++) {
+				// Find a shortest augmenting path from team i, column 0 is the artificial start
+				rowOfCol[0] = i;
+				int col = 0;
+				Arrays.fill(minSlack, Double.POSITIVE_INFINITY);
+				Arrays.fill(visited, false);
+				do {
+					visited[col] = true;
+					int row = rowOfCol[col];
+					double delta = Double.POSITIVE_INFINITY;
+					int nextCol = 0;
+					for(int j = 1; j <= n; j++) {
+						if(!visited[j]) {
+							double slack = cost[(row - 1) * n + j - 1] - rowPotential[row] - colPotential[j];
+							if(slack < minSlack[j]) {
+								minSlack[j] = slack;
+								previousCol[j] = col;
+							}
+							if(minSlack[j] < delta) {
+								delta = minSlack[j];
+								nextCol = j;
+							}
+						}
+					}
+					for(int j = 0; j <= n; j++) {
+						if(visited[j]) {
+							rowPotential[rowOfCol[j]] += delta;
+							colPotential[j] -= delta;
+						}
+						else {
+							minSlack[j] -= delta;
+						}
+					}
+					col = nextCol;
+				} while(rowOfCol[col] != 0);
+				do {
+					int previous = previousCol[col];
+					rowOfCol[col] = rowOfCol[previous];
+					col = previous;
+				} while(col != 0);
+			}
+			
+			double total = 0;
+			for(int j = 1; j <= n; j++) {
+				int i = rowOfCol[j] - 1;
+				this.relaxedHap[league[i]] = j - 1;
+				total += cost[i * n + j - 1];
+			}
+			this.leagueCost[l] = total;
+		}
+	}
+	
+	/**
+	 * Returns the lower bound, that is, the best value of the relaxation rounded up to an integer
+	 **/
+	public int getBound() {
+		return (int) Math.ceil(this.bestValue - 1e-6);
+	}
+	
+	/**
+	 * Returns the number of violations of the best relaxed solution, or of the given upper bound if that is better
+	 **/
+	public int getUpperBound() {
+		return this.upperBound;
+	}
+	
+	/**
+	 * Returns the best relaxed solution found, as the HAP of every team, or null if the relaxation was not solved yet
+	 **/
+	public int[] getBestAssignment() {
+		return this.bestAssignment == null ? null : this.bestAssignment.clone();
+	}
+	
+	/**
+	 * Returns the number of subgradient iterations made
+	 **/
+	public int getIterations() {
+		return this.iterations;
+	}
+}
@@ -0,0 +1,143 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import jdk.jfr.*;
+
+/* This program keeps the metrics of the solvers in one registry for the whole JVM, such that it can be seen where the time goes
+ * for instances of different sizes. Three kinds of metrics are kept:
+ * - Phases (parse, build, solve, extract, output, ...), of which the number of times, total and maximum duration are recorded.
+ *   Every phase is also a JFR event (mlsp.Phase), so phases show up in a flight recording next to GC and JIT activity.
+ * - Counters, such as the number of variables and constraints of the MILP, the QUBO non-zeros or the moves of the heuristics.
+ * - Gauges, which hold the last value set, such as the moves evaluated per second or the acceptance rate.
+ * All methods are thread-safe. The registry can be returned as JSON with toJson (which MLSP_Benchmark writes with --metrics), and
+ * is cleared with reset.
+ */
+
+public class MLSP_Metrics {
+	
+	static final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+	static final ConcurrentHashMap<String, Double> gauges = new ConcurrentHashMap<String, Double>();
+	static final ConcurrentHashMap<String, long[]> phases = new ConcurrentHashMap<String, long[]>();	// {count, total, max} in nanoseconds
+	
+	/**
+	 * A phase that is timed from its creation until stop is called, which is committed as JFR event
+	 **/
+	@Name("mlsp.Phase")
+	@Label("MLSP Phase")
+	@Category("MLSP")
+	@Description("A phase of reading, modelling, solving or writing an MLSP instance")
+	public static class Phase extends jdk.jfr.Event {
+		
+		@Label("Phase")
+		String phase;
+		
+		long startNanos;
+		
+		/**
+		 * Ends the phase, records its duration in the registry and commits the JFR event
+		 **/
+		public void stop() {
+			
+			long nanos = System.nanoTime() - this.startNanos;
+			end();
+			commit();
+			record(this.phase, nanos);
+		}
+	}
+	
+	/**
+	 * Starts timing a phase with the given name, the phase is recorded when stop is called on the returned object
+	 **/
+	public static Phase start(String phase) {
+		
+		Phase event = new Phase();
+		event.phase = phase;
+		event.begin();
+		event.startNanos = System.nanoTime();
+		return event;
+	}
+	
+	/**
+	 * Records one occurrence of a phase with the given duration
+	 **/
+	public static void record(String phase, long nanos) {
+		
+		long[] stats = phases.computeIfAbsent(phase, k -> new long[3]);
+		synchronized(stats) {
+			stats[0]++;
+			stats[1] += nanos;
+			stats[2] = Math.max(stats[2], nanos);
+		}
+	}
+	
+	/**
+	 * Adds the amount to the counter with the given name
+	 **/
+	public static void count(String name, long amount) {
+		counters.computeIfAbsent(name, k -> new LongAdder()).add(amount);
+	}
+	
+	/**
+	 * Sets the gauge with the given name
+	 **/
+	public static void gauge(String name, double value) {
+		gauges.put(name, value);
+	}
+	
+	/**
+	 * Sets the gauges (prefix).movesPerSecond and (prefix).acceptanceRate of a local search, and adds its moves to the counters
+	 **/
+	public static void moves(String prefix, long evaluated, long accepted, long nanos) {
+		
+		count(prefix + ".movesEvaluated", evaluated);
+		count(prefix + ".movesAccepted", accepted);
+		if(nanos > 0) {
+			gauge(prefix + ".movesPerSecond", evaluated * 1e9 / nanos);
+		}
+		if(evaluated > 0) {
+			gauge(prefix + ".acceptanceRate", accepted / (double) evaluated);
+		}
+	}
+	
+	/**
+	 * Removes all metrics
+	 **/
+	public static void reset() {
+		
+		counters.clear();
+		gauges.clear();
+		phases.clear();
+	}
+	
+	/**
+	 * Returns all metrics as a JSON object, with the names in alphabetical order
+	 **/
+	public static String toJson() {
+		
+		StringBuilder json = new StringBuilder("{\"phases\": {");
+		String separator = "";
+		for(Map.Entry<String, long[]> entry : new TreeMap<String, long[]>(phases).entrySet()) {
+			long[] stats = entry.getValue();
+			synchronized(stats) {
+				json.append(separator).append("\"").append(entry.getKey()).append("\": {\"count\": ").append(stats[0])
+					.append(", \"totalNanos\": ").append(stats[1]).append(", \"maxNanos\": ").append(stats[2]).append("}");
+			}
+			separator = ", ";
+		}
+		
+		json.append("}, \"counters\": {");
+		separator = "";
+		for(Map.Entry<String, LongAdder> entry : new TreeMap<String, LongAdder>(counters).entrySet()) {
+			json.append(separator).append("\"").append(entry.getKey()).append("\": ").append(entry.getValue().sum());
+			separator = ", ";
+		}
+		
+		json.append("}, \"gauges\": {");
+		separator = "";
+		for(Map.Entry<String, Double> entry : new TreeMap<String, Double>(gauges).entrySet()) {
+			json.append(separator).append("\"").append(entry.getKey()).append("\": ").append(entry.getValue());
+			separator = ", ";
+		}
+		return json.append("}}").toString();
+	}
+}
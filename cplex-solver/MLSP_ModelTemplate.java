@@ -0,0 +1,128 @@
+import java.util.*;
+
+/* This program holds the parts of the models that only depend on the league size and the HAP set, and not on the clubs of an
+ * instance, such that they are built once when many instances of the same size class are solved in one JVM:
+ * - The HAP set U itself, which is shared by all instances with the same HAP set, together with its bit masks (see MLSP_BitModel)
+ *   and the number of rounds in which every pair of HAPs plays at home (used for the club penalties of the QUBO).
+ * - The assignment block of one league: constraints 1 and 2 of the MILP, and penalty1 and penalty2 of the QUBO, over the local
+ *   variables (position in the league)*leagueSize + h. These are the same for every league, only the teams differ.
+ * Templates are immutable and kept in a bounded cache, in which the least recently used template is removed when it is full.
+ * The arrays of a template are shared, so they should never be modified.
+ */
+
+public class MLSP_ModelTemplate {
+	
+	static final int MAX_TEMPLATES = 8;
+	static final LinkedHashMap<String, MLSP_ModelTemplate> cache = new LinkedHashMap<String, MLSP_ModelTemplate>(16, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<String, MLSP_ModelTemplate> eldest) {
+			return size() > MAX_TEMPLATES;
+		}
+	};
+	
+	final int leagueSize;
+	final int numRounds;
+	final int[][] U;
+	final long[] hapMask;				// Bit r of hapMask[h] is set if HAP h plays at home in round r (if there are at most 64 rounds)
+	final int[][] overlap;				// The number of rounds in which both HAPs play at home
+	
+	// Constraint 1 of HAP h contains the local variables hapRows[h], constraint 2 of the team at position i contains teamRows[i]
+	final int[][] hapRows;
+	final int[][] teamRows;
+	final double[] ones;
+	
+	// The coefficients of penalty1 and penalty2 of one league with weight 1: entry k is the coefficient of local variables
+	// blockFirst[k] and blockSecond[k] (a linear coefficient if both are equal), and the constant is leagueSize for both penalties
+	final int[] blockFirst;
+	final int[] blockSecond;
+	final double[] blockPenalty1;
+	final double[] blockPenalty2;
+	
+	/**
+	 * Builds the template for the given HAP set
+	 **/
+	MLSP_ModelTemplate(int[][] U) {
+		
+		this.leagueSize = U.length;
+		this.numRounds = U[0].length;
+		this.U = new int[this.leagueSize][];
+		for(int h = 0; h < this.leagueSize; h++) {
+			this.U[h] = U[h].clone();
+		}
+		
+		this.hapMask = new long[this.leagueSize];
+		this.overlap = new int[this.leagueSize][this.leagueSize];
+		for(int h1 = 0; h1 < this.leagueSize; h1++) {
+			for(int r = 0; r < Math.min(64, this.numRounds); r++) {
+				if(U[h1][r] == 1) {
+					this.hapMask[h1] |= 1L << r;
+				}
+			}
+			for(int h2 = 0; h2 < this.leagueSize; h2++) {
+				for(int r = 0; r < this.numRounds; r++) {
+					this.overlap[h1][h2] += U[h1][r] * U[h2][r];
+				}
+			}
+		}
+		
+		int n = this.leagueSize;
+		this.hapRows = new int[n][n];
+		this.teamRows = new int[n][n];
+		for(int i = 0; i < n; i++) {
+			for(int h = 0; h < n; h++) {
+				this.hapRows[h][i] = i * n + h;
+				this.teamRows[i][h] = i * n + h;
+			}
+		}
+		this.ones = new double[n];
+		Arrays.fill(this.ones, 1);
+		
+		// (sum - 1)^2 = sum of -x + sum over pairs of 2*x*x' + 1, for the HAPs (penalty1) and for the teams (penalty2)
+		int size = n * n + 2 * n * (n * (n - 1) / 2);
+		this.blockFirst = new int[size];
+		this.blockSecond = new int[size];
+		this.blockPenalty1 = new double[size];
+		this.blockPenalty2 = new double[size];
+		int k = 0;
+		for(int v = 0; v < n * n; v++) {
+			this.blockFirst[k] = v;
+			this.blockSecond[k] = v;
+			this.blockPenalty1[k] = -1;
+			this.blockPenalty2[k] = -1;
+			k++;
+		}
+		for(int a = 0; a < n; a++) {
+			for(int b = 0; b < n; b++) {
+				for(int c = b + 1; c < n; c++) {
+					// Two teams (b and c) with the same HAP a
+					this.blockFirst[k] = b * n + a;
+					this.blockSecond[k] = c * n + a;
+					this.blockPenalty1[k] = 2;
+					k++;
+					// The same team a with two HAPs (b and c)
+					this.blockFirst[k] = a * n + b;
+					this.blockSecond[k] = a * n + c;
+					this.blockPenalty2[k] = 2;
+					k++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the template for the given HAP set, which is taken from the cache if an equal HAP set was seen before
+	 **/
+	static synchronized MLSP_ModelTemplate of(int[][] U) {
+		
+		String key = Arrays.deepToString(U);
+		MLSP_ModelTemplate template = cache.get(key);
+		if(template == null) {
+			MLSP_Metrics.count("templates.misses", 1);
+			template = new MLSP_ModelTemplate(U);
+			cache.put(key, template);
+		}
+		else {
+			MLSP_Metrics.count("templates.hits", 1);
+		}
+		return template;
+	}
+}
@@ -0,0 +1,215 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/* This program runs several replicas of MLSP_Annealer at the same time on a fork-join pool. Two modes are supported:
+ * - Parallel tempering: every replica sweeps at a fixed temperature from a geometric ladder, and after every epoch replicas at 
+ *   neighbouring temperatures may exchange their temperatures according to the replica exchange criterion.
+ * - Multi-restart: every replica repeatedly anneals from the highest to the lowest temperature, starting from a new random assignment.
+ * All replicas share the best assignment found so far (the incumbent), which is updated without locks. The solver stops when the 
+ * wall-clock limit has passed, or when an incumbent with at most the target number of violations is found.
+ */
+
+public class MLSP_ParallelSolver {
+	
+	MLSP_Instance instance;
+	int numReplicas;
+	int numThreads;
+	boolean replicaExchange = true;		// Parallel tempering if true, multi-restart otherwise
+	double tMin = 0.05;
+	double tMax = 3.0;
+	int sweepsPerEpoch = 10;			// Sweeps between two exchange attempts
+	int sweepsPerRestart = 1000;		// Length of one annealing run in multi-restart mode
+	long timeLimitMillis = 10000;
+	int targetViolations = 0;
+	long seed;
+	
+	AtomicReference<MLSP_Incumbent> incumbent = new AtomicReference<MLSP_Incumbent>();
+	long startTime;
+	int exchangeEpochs;					// Epochs that ended with exchanges, which alternate between even and odd pairs
+	int exchangesAttempted;				// Pairs of replicas for which an exchange was attempted
+	int exchangesAccepted;
+	
+	/**
+	 * Creates a solver with the given number of replicas, which are divided over at most as many threads as there are processors
+	 **/
+	public MLSP_ParallelSolver(MLSP_Instance instance, int numReplicas, long seed) {
+		
+		this.instance = instance;
+		this.numReplicas = numReplicas;
+		this.numThreads = Math.min(numReplicas, Runtime.getRuntime().availableProcessors());
+		this.seed = seed;
+	}
+	
+	/**
+	 * This method sets the stop condition: the solver stops after the time limit, or as soon as the target is reached
+	 **/
+	public void setStopCondition(long timeLimitMillis, int targetViolations) {
+		
+		this.timeLimitMillis = timeLimitMillis;
+		this.targetViolations = targetViolations;
+	}
+	
+	/**
+	 * This method chooses between parallel tempering (true) and independent restarts (false)
+	 **/
+	public void setReplicaExchange(boolean replicaExchange) {
+		this.replicaExchange = replicaExchange;
+	}
+	
+	/**
+	 * This method sets the lowest and highest temperature of the ladder (or of the annealing schedule for restarts)
+	 **/
+	public void setTemperatures(double tMin, double tMax) {
+		
+		this.tMin = tMin;
+		this.tMax = tMax;
+	}
+	
+	/**
+	 * This method runs the replicas until the stop condition holds and returns the best incumbent found
+	 **/
+	public MLSP_Incumbent solve() {
+		
+		this.startTime = System.nanoTime();
+		this.incumbent.set(null);
+		
+		// The replicas are stored in order of their temperature, so ladder[i] always sweeps at temperature[i]
+		MLSP_Annealer[] ladder = new MLSP_Annealer[this.numReplicas];
+		double[] temperature = new double[this.numReplicas];
+		double factor = this.numReplicas > 1 ? Math.pow(this.tMax / this.tMin, 1.0 / (this.numReplicas - 1)) : 1;
+		for(int i = 0; i < this.numReplicas; i++) {
+			ladder[i] = new MLSP_Annealer(this.instance, this.seed + i);
+			temperature[i] = this.tMin * Math.pow(factor, i);
+			offer(ladder[i]);
+		}
+		Random rd = new Random(this.seed - 1);
+		
+		ForkJoinPool pool = new ForkJoinPool(this.numThreads);
+		try {
+			while(!stopRequested()) {
+				List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+				for(int i = 0; i < this.numReplicas; i++) {
+					MLSP_Annealer replica = ladder[i];
+					double t = temperature[i];
+					if(this.replicaExchange) {
+						tasks.add(Executors.callable(() -> runFixedTemperature(replica, t)));
+					}
+					else {
+						tasks.add(Executors.callable(() -> runRestart(replica)));
+					}
+				}
+				for(Future<Object> f : pool.invokeAll(tasks)) {
+					f.get();
+				}
+				
+				if(this.replicaExchange) {
+					exchange(ladder, temperature, rd);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		
+		long evaluated = 0;
+		long accepted = 0;
+		for(MLSP_Annealer replica : ladder) {
+			evaluated += replica.movesEvaluated;
+			accepted += replica.movesAccepted;
+		}
+		MLSP_Metrics.moves("pt", evaluated, accepted, System.nanoTime() - this.startTime);
+		MLSP_Metrics.count("pt.exchangesAttempted", this.exchangesAttempted);
+		MLSP_Metrics.count("pt.exchangesAccepted", this.exchangesAccepted);
+		
+		return this.incumbent.get();
+	}
+	
+	/**
+	 * Performs one epoch of sweeps of a replica at a fixed temperature
+	 **/
+	void runFixedTemperature(MLSP_Annealer replica, double temperature) {
+		
+		for(int s = 0; s < this.sweepsPerEpoch && !stopRequested(); s++) {
+			int before = replica.getBestViolations();
+			replica.sweep(temperature);
+			if(replica.getBestViolations() < before) {
+				offer(replica);
+			}
+		}
+	}
+	
+	/**
+	 * Performs a full annealing run of a replica from a new random assignment
+	 **/
+	void runRestart(MLSP_Annealer replica) {
+		
+		replica.randomAssignment();
+		double factor = Math.pow(this.tMin / this.tMax, 1.0 / Math.max(1, this.sweepsPerRestart - 1));
+		double temperature = this.tMax;
+		for(int s = 0; s < this.sweepsPerRestart && !stopRequested(); s++) {
+			int before = replica.getBestViolations();
+			replica.sweep(temperature);
+			if(replica.getBestViolations() < before) {
+				offer(replica);
+			}
+			temperature *= factor;
+		}
+	}
+	
+	/**
+	 * Attempts to exchange neighbouring replicas of the ladder. A pair at temperatures ti < tj with violations ei and ej is exchanged
+	 * with probability min(1, exp((ei - ej) * (1/ti - 1/tj))). Even and odd pairs are attempted in alternating epochs.
+	 **/
+	void exchange(MLSP_Annealer[] ladder, double[] temperature, Random rd) {
+		
+		for(int i = this.exchangeEpochs % 2; i + 1 < ladder.length; i += 2) {
+			this.exchangesAttempted++;
+			double ei = ladder[i].getViolations();
+			double ej = ladder[i + 1].getViolations();
+			double exponent = (ei - ej) * (1 / temperature[i] - 1 / temperature[i + 1]);
+			if(exponent >= 0 || rd.nextDouble() < Math.exp(exponent)) {
+				MLSP_Annealer temp = ladder[i];
+				ladder[i] = ladder[i + 1];
+				ladder[i + 1] = temp;
+				this.exchangesAccepted++;
+			}
+		}
+		this.exchangeEpochs++;
+	}
+	
+	/**
+	 * Offers the best assignment of a replica as new incumbent. The incumbent is replaced by compare-and-set, so a concurrent
+	 * improvement by another replica is never lost.
+	 **/
+	void offer(MLSP_Annealer replica) {
+		
+		int violations = replica.getBestViolations();
+		MLSP_Incumbent current = this.incumbent.get();
+		while(current == null || violations < current.violations) {
+			MLSP_Incumbent candidate = new MLSP_Incumbent(violations, replica.bestHap, System.nanoTime() - this.startTime);
+			if(this.incumbent.compareAndSet(current, candidate)) {
+				return;
+			}
+			current = this.incumbent.get();
+		}
+	}
+	
+	/**
+	 * Returns true if the time limit has passed or the target number of violations has been reached
+	 **/
+	boolean stopRequested() {
+		
+		MLSP_Incumbent current = this.incumbent.get();
+		if(current != null && current.violations <= this.targetViolations) {
+			return true;
+		}
+		return System.nanoTime() - this.startTime >= this.timeLimitMillis * 1000000L;
+	}
+}
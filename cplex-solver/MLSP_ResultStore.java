@@ -0,0 +1,340 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/* This program stores the results of many runs in one append-only binary file, such that the batch and verification tools can find
+ * the result of an (instance, solver, seed) triple without parsing solution files. All values are little-endian, in the order:
+ * - Header: magic number and format version (32-bit integers)
+ * - Records, one per run: the number of bytes of the rest of the record (32-bit), the seed (64-bit), the number of violations
+ *   (32-bit), the wall-clock time in nanoseconds (64-bit), the name of the instance and the name of the solver (each as 32-bit
+ *   length followed by UTF-8 bytes), and the solution in the encoding of MLSP_CompactSolution (32-bit length followed by the bytes)
+ * Records are only ever appended, so a run that is stored again with the same triple hides the earlier record but does not
+ * replace it. Several processes can append to the same store: every append locks the file, adds the records that other processes
+ * appended in the meantime to the index, and writes at the end of the file. A record that was not completely written (for
+ * instance because the JVM stopped during the write) is ignored, and cut off by the next process that writes to the store. The
+ * file is memory-mapped for reading, and the index from triples to records is built when the store is opened. The records of a
+ * store can be listed as CSV:
+ *
+ *   java MLSP_ResultStore <file>
+ */
+
+public class MLSP_ResultStore implements Closeable {
+	
+	static final int MAGIC = 0x4D4C5352;		// "MLSR"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 8;
+	static final int FIXED_RECORD_BYTES = 4 + 8 + 4 + 8;		// The length, seed, violations and time of a record
+	
+	/* One run in the store, whose solution stays in the mapped file until it is asked for */
+	public static class Record {
+		String instance;
+		String solver;
+		long seed;
+		int violations;
+		long wallNanos;
+		long solutionPosition;		// The position of the solution bytes in the file
+		int solutionLength;
+		MLSP_ResultStore store;
+		
+		public String getInstance() {
+			return this.instance;
+		}
+		
+		public String getSolver() {
+			return this.solver;
+		}
+		
+		public long getSeed() {
+			return this.seed;
+		}
+		
+		public int getViolations() {
+			return this.violations;
+		}
+		
+		public long getWallNanos() {
+			return this.wallNanos;
+		}
+		
+		/**
+		 * Returns the solution in the encoding of MLSP_CompactSolution
+		 **/
+		public byte[] getSolution() throws IOException {
+			return this.store.read(this.solutionPosition, this.solutionLength);
+		}
+	}
+	
+	File file;
+	FileChannel channel;
+	boolean writable;
+	long size;								// The end of the last complete record
+	ByteBuffer mapped;						// Mapping of the file up to (at least) the end of the records that were indexed
+	LinkedHashMap<String, Record> index = new LinkedHashMap<String, Record>();
+	
+	public static void main(String args[]) {
+		
+		if(args.length == 0) {
+			System.out.println("Usage: java MLSP_ResultStore <file>");
+			return;
+		}
+		
+		try(MLSP_ResultStore store = MLSP_ResultStore.open(new File(args[0]), false)) {
+			System.out.println("instance,solver,seed,violations,wallNanos,solutionBytes");
+			for(Record record : store.records()) {
+				System.out.println(record.instance + "," + record.solver + "," + record.seed + "," + record.violations + ","
+						+ record.wallNanos + "," + record.solutionLength);
+			}
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Opens the store in the given file and indexes its records. A writable store is created if the file does not exist.
+	 **/
+	public static MLSP_ResultStore open(File file, boolean writable) throws IOException {
+		
+		MLSP_ResultStore store = new MLSP_ResultStore();
+		store.file = file;
+		store.writable = writable;
+		store.channel = writable ? FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)
+				: FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			if(writable) {
+				FileLock lock = store.channel.lock();
+				try {
+					store.scan();
+				}
+				finally {
+					lock.release();
+				}
+			}
+			else {
+				store.scan();
+			}
+		}
+		catch (IOException e) {
+			store.channel.close();
+			throw e;
+		}
+		return store;
+	}
+	
+	/**
+	 * Returns the key of the index for the given triple
+	 **/
+	static String key(String instance, String solver, long seed) {
+		return instance + "|" + solver + "|" + seed;
+	}
+	
+	/**
+	 * This checks the header and indexes all complete records, an empty writable file gets a header first. A writable store should
+	 * hold the lock of the file.
+	 **/
+	void scan() throws IOException {
+		
+		long length = this.channel.size();
+		if(length == 0 && this.writable) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).flip();
+			write(header, 0);
+			length = HEADER_BYTES;
+		}
+		if(length > Integer.MAX_VALUE) {
+			throw new IOException(this.file + " is larger than 2 GB");
+		}
+		
+		this.mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+		if(length < HEADER_BYTES || this.mapped.getInt(0) != MAGIC) {
+			throw new IOException(this.file + " is not an MLSP result store");
+		}
+		int version = this.mapped.getInt(4);
+		if(version < 1 || version > VERSION) {
+			throw new IOException(this.file + " has unsupported format version " + version);
+		}
+		this.size = HEADER_BYTES;
+		indexRecords(length);
+	}
+	
+	/**
+	 * This indexes the complete records from the end of the indexed records up to the given length of the mapped file. A writable
+	 * store cuts off an incomplete record at the end, so it should hold the lock of the file.
+	 **/
+	void indexRecords(long length) throws IOException {
+		
+		int position = (int) this.size;
+		while(position + 4 <= length) {
+			int recordBytes = this.mapped.getInt(position);
+			if(recordBytes < FIXED_RECORD_BYTES - 4 || position + 4L + recordBytes > length) {
+				break;
+			}
+			Record record = new Record();
+			record.store = this;
+			ByteBuffer buffer = this.mapped.slice(position + 4, recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+			try {
+				record.seed = buffer.getLong();
+				record.violations = buffer.getInt();
+				record.wallNanos = buffer.getLong();
+				record.instance = readString(buffer);
+				record.solver = readString(buffer);
+				record.solutionLength = buffer.getInt();
+				record.solutionPosition = position + 4 + buffer.position();
+				if(record.solutionLength < 0 || buffer.remaining() != record.solutionLength) {
+					break;
+				}
+			}
+			catch (BufferUnderflowException | IllegalArgumentException e) {
+				break;
+			}
+			String key = key(record.instance, record.solver, record.seed);
+			this.index.remove(key);		// Such that the records stay in the order of their last append
+			this.index.put(key, record);
+			position += 4 + recordBytes;
+		}
+		this.size = position;
+		
+		if(this.size < length && this.writable) {
+			this.channel.truncate(this.size);
+		}
+	}
+	
+	/**
+	 * Reads a string stored as length followed by UTF-8 bytes
+	 **/
+	static String readString(ByteBuffer buffer) {
+		
+		int length = buffer.getInt();
+		if(length < 0 || length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Appends the result of one run and adds it to the index
+	 **/
+	public synchronized Record append(String instance, String solver, long seed, int violations, long wallNanos, byte[] solution) throws IOException {
+		
+		if(!this.writable) {
+			throw new IOException(this.file + " was opened read-only");
+		}
+		byte[] instanceBytes = instance.getBytes(StandardCharsets.UTF_8);
+		byte[] solverBytes = solver.getBytes(StandardCharsets.UTF_8);
+		int recordBytes = FIXED_RECORD_BYTES - 4 + 4 + instanceBytes.length + 4 + solverBytes.length + 4 + solution.length;
+		
+		ByteBuffer buffer = ByteBuffer.allocate(4 + recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(recordBytes).putLong(seed).putInt(violations).putLong(wallNanos);
+		buffer.putInt(instanceBytes.length).put(instanceBytes);
+		buffer.putInt(solverBytes.length).put(solverBytes);
+		buffer.putInt(solution.length).put(solution);
+		buffer.flip();
+		
+		FileLock lock = this.channel.lock();
+		try {
+			long length = this.channel.size();
+			if(length > this.size) {
+				// Records appended by other processes since the store was indexed
+				if(length > Integer.MAX_VALUE) {
+					throw new IOException(this.file + " is larger than 2 GB");
+				}
+				this.mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+				indexRecords(length);
+			}
+			write(buffer, this.size);
+		}
+		finally {
+			lock.release();
+		}
+		
+		Record record = new Record();
+		record.store = this;
+		record.instance = instance;
+		record.solver = solver;
+		record.seed = seed;
+		record.violations = violations;
+		record.wallNanos = wallNanos;
+		record.solutionLength = solution.length;
+		record.solutionPosition = this.size + 4 + recordBytes - solution.length;
+		this.size += 4 + recordBytes;
+		
+		this.index.remove(key(instance, solver, seed));		// Such that the records stay in the order of their last append
+		this.index.put(key(instance, solver, seed), record);
+		return record;
+	}
+	
+	/**
+	 * Appends the solution stored in the instance, as the result of the given solver and seed
+	 **/
+	public Record append(String instanceName, MLSP_Instance instance, String solver, long seed, long wallNanos) throws IOException {
+		
+		byte[] solution = MLSP_CompactSolution.encode(instance);
+		if(solution == null) {
+			throw new IllegalStateException("The instance has no solution to store");
+		}
+		return append(instanceName, solver, seed, (int) Math.round(instance.numViolations), wallNanos, solution);
+	}
+	
+	/**
+	 * Writes the buffer to the file from the given position on
+	 **/
+	void write(ByteBuffer buffer, long position) throws IOException {
+		
+		while(buffer.hasRemaining()) {
+			position += this.channel.write(buffer, position);
+		}
+	}
+	
+	/**
+	 * Returns length bytes from the given position, the file is mapped again if records were appended since it was mapped
+	 **/
+	synchronized byte[] read(long position, int length) throws IOException {
+		
+		if(position + length > this.mapped.capacity()) {
+			if(this.size > Integer.MAX_VALUE) {
+				throw new IOException(this.file + " is larger than 2 GB");
+			}
+			this.mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.size).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		byte[] bytes = new byte[length];
+		this.mapped.get((int) position, bytes);
+		return bytes;
+	}
+	
+	/**
+	 * Returns the last record of the given triple, or null if it was never stored
+	 **/
+	public synchronized Record get(String instance, String solver, long seed) {
+		return this.index.get(key(instance, solver, seed));
+	}
+	
+	/**
+	 * Returns the last record of every triple in the store
+	 **/
+	public synchronized List<Record> records() {
+		return new ArrayList<Record>(this.index.values());
+	}
+	
+	/**
+	 * Returns the last record of every triple of the given instance
+	 **/
+	public synchronized List<Record> records(String instance) {
+		
+		ArrayList<Record> records = new ArrayList<Record>();
+		for(Record record : this.index.values()) {
+			if(record.instance.equals(instance)) {
+				records.add(record);
+			}
+		}
+		return records;
+	}
+	
+	public synchronized void close() throws IOException {
+		this.channel.close();
+	}
+}
@@ -0,0 +1,281 @@
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/* This program runs a local solve server, such that many instances (for example what-if scenarios) can be solved by one JVM that
+ * keeps the solver code loaded and JIT compiled, instead of starting a new JVM for every instance. The server listens on localhost
+ * and understands two requests:
+ *
+ *   POST /solve?solver=<name>&seed=<n>&timeLimit=<ms>	with an instance in the format of the Data Generator as body
+ *   GET  /status											with the number of queued, running, completed and rejected requests
+ *
+ * The solver names are those of MLSP_Solver.byName (TS if none is given). Instances are solved by a fixed number of workers, and at
+ * most a given number of requests wait in the queue. When the queue is full, a request is rejected immediately with status 503, so
+ * the caller can retry later. Parsed instances are kept in a bounded cache keyed by a hash of the text, such that a scenario that is
+ * sent again is not parsed again (every request solves its own copy). The response is a JSON object with the number of violations,
+ * the running time, the time spent waiting in the queue, and the HAP of every team. The options are given as arguments:
+ *
+ *   java MLSP_Server [--port <n>] [--workers <n>] [--queue <n>]
+ *
+ * MLSP_Client can be used to send the instances from the data folder to the server.
+ */
+
+public class MLSP_Server {
+	
+	static final int MAX_CACHED_INSTANCES = 64;
+	
+	int port = 8080;
+	int workers = 1;
+	int queueCapacity = 100;
+	
+	HttpServer server;
+	ThreadPoolExecutor scheduler;
+	LinkedHashMap<String, MLSP_Instance> instances = new LinkedHashMap<String, MLSP_Instance>(16, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<String, MLSP_Instance> eldest) {
+			return size() > MAX_CACHED_INSTANCES;
+		}
+	};
+	
+	AtomicLong completed = new AtomicLong();
+	AtomicLong rejected = new AtomicLong();
+	AtomicLong failed = new AtomicLong();
+	AtomicLong cacheHits = new AtomicLong();
+	
+	public static void main(String args[]) {
+		
+		MLSP_Server server = new MLSP_Server();
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			switch(args[i]) {
+			case "--port":
+				server.port = Integer.parseInt(args[i + 1]);
+				break;
+			case "--workers":
+				server.workers = Integer.parseInt(args[i + 1]);
+				break;
+			case "--queue":
+				server.queueCapacity = Integer.parseInt(args[i + 1]);
+				break;
+			default:
+				System.out.println("Unknown option: " + args[i]);
+				return;
+			}
+		}
+		
+		try {
+			server.start();
+			System.out.println("Listening on http://localhost:" + server.server.getAddress().getPort() + " with " + server.workers
+					+ " worker(s) and a queue of " + server.queueCapacity);
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * This method starts the server, the requests are handled on background threads
+	 **/
+	public void start() throws IOException {
+		
+		this.scheduler = new ThreadPoolExecutor(this.workers, this.workers, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(this.queueCapacity));
+		
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port), 0);
+		this.server.createContext("/solve", this::handleSolve);
+		this.server.createContext("/status", this::handleStatus);
+		// The connections only wait for the scheduler, so a few more threads than workers and queued requests are never needed
+		this.server.setExecutor(Executors.newFixedThreadPool(this.workers + this.queueCapacity + 1));
+		this.server.start();
+	}
+	
+	/**
+	 * This method stops the server, requests that are still queued or running are abandoned
+	 **/
+	public void stop() {
+		
+		this.server.stop(0);
+		this.scheduler.shutdownNow();
+		((ExecutorService) this.server.getExecutor()).shutdownNow();
+	}
+	
+	/**
+	 * Handles POST /solve: the instance is parsed (or taken from the cache), queued, and the solution is sent back when it is solved
+	 **/
+	void handleSolve(HttpExchange exchange) throws IOException {
+		
+		if(!exchange.getRequestMethod().equals("POST")) {
+			respond(exchange, 405, error("Use POST with an instance as body"));
+			return;
+		}
+		
+		Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+		String solverName = query.getOrDefault("solver", "TS");
+		MLSP_Solver solver;
+		MLSP_Instance instance;
+		try {
+			long seed = Long.parseLong(query.getOrDefault("seed", "0"));
+			long timeLimit = Long.parseLong(query.getOrDefault("timeLimit", "0"));
+			solver = MLSP_Solver.byName(solverName, seed, timeLimit, null);
+			instance = instanceFor(readBody(exchange));
+		}
+		catch (RuntimeException e) {
+			// An unknown solver, a malformed number, or an instance that does not follow the format
+			respond(exchange, 400, error("Invalid request: " + e));
+			return;
+		}
+		
+		long queued = System.nanoTime();
+		long[] started = new long[1];
+		Future<MLSP_Instance> result;
+		try {
+			result = this.scheduler.submit(() -> {
+				started[0] = System.nanoTime();
+				solver.solve(instance);
+				return instance;
+			});
+		}
+		catch (RejectedExecutionException e) {
+			this.rejected.incrementAndGet();
+			respond(exchange, 503, error("The queue is full, try again later"));
+			return;
+		}
+		
+		try {
+			result.get();
+			this.completed.incrementAndGet();
+			respond(exchange, 200, solutionJson(solver.getName(), instance, (started[0] - queued) / 1e6));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, error("The server is stopping"));
+		}
+		catch (ExecutionException e) {
+			this.failed.incrementAndGet();
+			respond(exchange, 500, error("Solving failed: " + e.getCause()));
+		}
+	}
+	
+	/**
+	 * Handles GET /status
+	 **/
+	void handleStatus(HttpExchange exchange) throws IOException {
+		
+		int cached;
+		synchronized(this.instances) {
+			cached = this.instances.size();
+		}
+		respond(exchange, 200, "{\"queued\": " + this.scheduler.getQueue().size() + ", \"running\": " + this.scheduler.getActiveCount()
+				+ ", \"completed\": " + this.completed.get() + ", \"rejected\": " + this.rejected.get() + ", \"failed\": " + this.failed.get()
+				+ ", \"cachedInstances\": " + cached + ", \"cacheHits\": " + this.cacheHits.get() + "}");
+	}
+	
+	/**
+	 * Returns a copy of the instance given as text, which is parsed only if the same text was not seen recently
+	 **/
+	MLSP_Instance instanceFor(String text) {
+		
+		String key = digest(text);
+		MLSP_Instance instance;
+		synchronized(this.instances) {
+			instance = this.instances.get(key);
+		}
+		if(instance != null) {
+			this.cacheHits.incrementAndGet();
+		}
+		else {
+			instance = new MLSP_Instance(new Scanner(text));
+			synchronized(this.instances) {
+				this.instances.put(key, instance);
+			}
+		}
+		return instance.copy();
+	}
+	
+	/**
+	 * Returns the SHA-256 hash of the text in hexadecimal
+	 **/
+	static String digest(String text) {
+		
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for(byte b : hash) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Returns the solution stored in the instance as JSON object
+	 **/
+	static String solutionJson(String solver, MLSP_Instance instance, double queueMillis) {
+		
+		StringBuilder json = new StringBuilder();
+		json.append("{\"solver\": \"").append(solver).append("\", \"violations\": ").append(instance.numViolations)
+			.append(", \"runningTime\": ").append(instance.runningTime).append(", \"queueTime\": ").append(queueMillis)
+			.append(", \"assignment\": [");
+		int[] assignment = instance.getAssignment();
+		for(int t = 0; assignment != null && t < assignment.length; t++) {
+			json.append(t > 0 ? ", " : "").append(assignment[t]);
+		}
+		return json.append("]}").toString();
+	}
+	
+	/**
+	 * Returns a JSON object with an error message
+	 **/
+	static String error(String message) {
+		return "{\"error\": \"" + message.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", " ") + "\"}";
+	}
+	
+	/**
+	 * Returns the parameters of a query string
+	 **/
+	static Map<String, String> parseQuery(String query) {
+		
+		Map<String, String> parameters = new HashMap<String, String>();
+		if(query == null) {
+			return parameters;
+		}
+		for(String pair : query.split("&")) {
+			int split = pair.indexOf('=');
+			if(split > 0) {
+				parameters.put(URLDecoder.decode(pair.substring(0, split), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(split + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return parameters;
+	}
+	
+	/**
+	 * Returns the body of a request as text
+	 **/
+	static String readBody(HttpExchange exchange) throws IOException {
+		
+		try(InputStream in = exchange.getRequestBody()) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+	
+	/**
+	 * Sends a JSON response with the given status code
+	 **/
+	static void respond(HttpExchange exchange, int status, String json) throws IOException {
+		
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length);
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
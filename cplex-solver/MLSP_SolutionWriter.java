@@ -0,0 +1,98 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+/* This program writes the incumbents of an anytime solver to the solution file while the solver is still running, such that the
+ * file always holds a recent good schedule, in the same format as MLSP_Instance.outputSolution. Early in a search almost every
+ * iteration improves the incumbent, so the solver thread only keeps the latest incumbent, and a background thread writes it at most
+ * once per interval (and a last time when the writer is closed). The solution is written from a copy of the instance, such that
+ * the instance being solved is not touched. Every incumbent is first written to a temporary file, which then replaces the solution
+ * file, so readers never see a partially written file.
+ */
+
+public class MLSP_SolutionWriter implements MLSP_IncumbentListener, Closeable {
+	
+	static final long DEFAULT_INTERVAL_MILLIS = 1000;
+	
+	MLSP_Instance copy;
+	String filename;
+	MLSP_Incumbent latest;					// The best incumbent received so far, null if none
+	int written = Integer.MAX_VALUE;		// The number of violations of the solution in the file
+	ScheduledExecutorService timer;
+	
+	/**
+	 * Creates a writer for the solutions of the given instance, the file is placed where outputSolution places it
+	 **/
+	public MLSP_SolutionWriter(MLSP_Instance instance, String filename) {
+		this(instance, filename, DEFAULT_INTERVAL_MILLIS);
+	}
+	
+	/**
+	 * Creates a writer that writes the latest incumbent at most once per intervalMillis milliseconds
+	 **/
+	public MLSP_SolutionWriter(MLSP_Instance instance, String filename, long intervalMillis) {
+		
+		this.copy = instance.copy();
+		this.filename = filename;
+		this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "MLSP-SolutionWriter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.timer.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Keeps the incumbent if it is better than the latest one, it is written by the next flush
+	 **/
+	public synchronized void newIncumbent(MLSP_Incumbent incumbent) {
+		
+		if(this.latest == null || incumbent.getViolations() < this.latest.getViolations()) {
+			this.latest = incumbent;
+		}
+	}
+	
+	/**
+	 * Writes the latest incumbent, if it is better than the solution written before
+	 **/
+	void flush() {
+		
+		MLSP_Incumbent incumbent;
+		synchronized(this) {
+			incumbent = this.latest;
+		}
+		
+		synchronized(this.copy) {		// The timer and close may flush at the same time
+			if(incumbent == null || incumbent.getViolations() >= this.written) {
+				return;
+			}
+			try {
+				this.copy.storeAssignment(incumbent.assignment);
+				this.copy.runningTime = incumbent.getElapsedMillis();
+				String temporary = this.filename + ".tmp";
+				this.copy.outputSolution(temporary);
+				Files.move(Paths.get("../", temporary), Paths.get("../", this.filename), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+				this.written = incumbent.getViolations();
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Stops the background thread and writes the latest incumbent, if it was not written yet
+	 **/
+	public void close() {
+		
+		this.timer.shutdown();
+		try {
+			this.timer.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+	}
+}
@@ -0,0 +1,98 @@
+/* This program defines a solver for the MLSP, such that tools that run many instances (like MLSP_Benchmark) can choose the solver
+ * by name. A solver stores its solution in the instance, that is, in numViolations, z, x and runningTime.
+ */
+
+public interface MLSP_Solver {
+	
+	/**
+	 * Returns the name of the solver, which is also used as prefix of the solution files
+	 **/
+	String getName();
+	
+	/**
+	 * Solves the instance and stores the solution in it
+	 **/
+	void solve(MLSP_Instance instance);
+	
+	/**
+	 * Returns the solver with the given name (CPLEX, SA, PT, TS, LNS or BB), where seed is used by the randomised solvers. A name of the form 
+	 * DEC-(name) decomposes the instance (see MLSP_Decomposition) into parts of at most 25 leagues, that are solved in parallel 
+	 * by the solver with the remaining name. The names SA-QUBO1 up to SA-QUBO4 sample the QUBO of that encoding (see QuboEncoding)
+	 * with simulated annealing as the Python scripts do, and SA-QUBO uses the cheapest encoding for the size of the instance.
+	 **/
+	static MLSP_Solver byName(String name, long seed) {
+		return byName(name, seed, null);
+	}
+	
+	/**
+	 * Returns the solver with the given name, where the anytime solvers (CPLEX, TS and LNS) pass every improving solution to the
+	 * listener (if any) while they run. CPLEX stops after one hour and reports if optimality was not proven by then.
+	 **/
+	static MLSP_Solver byName(String name, long seed, MLSP_IncumbentListener listener) {
+		return byName(name, seed, 0, listener);
+	}
+	
+	/**
+	 * Returns the solver with the given name, where the solvers with a time limit (CPLEX, PT, TS, LNS and BB) stop after the given
+	 * number of milliseconds. A time limit of 0 uses the default: one minute for the heuristics and one hour for the exact solvers.
+	 **/
+	static MLSP_Solver byName(String name, long seed, long timeLimitMillis, MLSP_IncumbentListener listener) {
+		
+		long heuristicLimit = timeLimitMillis > 0 ? timeLimitMillis : 60000;
+		long exactLimit = timeLimitMillis > 0 ? timeLimitMillis : 3600000;
+		if(name.toUpperCase().startsWith("DEC-")) {
+			MLSP_Solver backend = byName(name.substring(4), seed, timeLimitMillis, null);
+			return create("DEC-" + backend.getName(), instance -> new MLSP_Decomposition(instance, 25).solve(backend, Runtime.getRuntime().availableProcessors()));
+		}
+		switch(name.toUpperCase()) {
+		case "CPLEX":
+			return create("CPLEX", instance -> {
+				if(!instance.solveMILPforMLSP(exactLimit, 0, listener)) {
+					System.out.println("The time limit was reached before optimality was proven.");
+				}
+			});
+		case "SA":
+			return create("SA", instance -> instance.solveSAforMLSP(seed, 1000, 100));
+		case "PT":
+			return create("PT", instance -> instance.solveParallelForMLSP(Runtime.getRuntime().availableProcessors(), heuristicLimit, seed));
+		case "TS":
+			return create("TS", instance -> instance.solveTSforMLSP(heuristicLimit, 0, seed, listener));
+		case "LNS":
+			return create("LNS", instance -> instance.solveTSforMLSP(heuristicLimit, 4, seed, listener));
+		case "BB":
+			return create("BB", instance -> {
+				if(!instance.solveBBforMLSP(exactLimit)) {
+					System.out.println("The time limit was reached before optimality was proven.");
+				}
+			});
+		case "SA-QUBO":
+			QuboSampler sampler = new QuboAnnealingSampler(100, 1000, heuristicLimit, seed);
+			return create(sampler.getName() + "-QUBO", instance -> instance.solveQUBOforMLSP(QuboSize.cheapest(instance), sampler));
+		case "SA-QUBO1":
+		case "SA-QUBO2":
+		case "SA-QUBO3":
+		case "SA-QUBO4":
+			QuboEncoding encoding = QuboEncoding.byName(name.substring(3));
+			QuboSampler encodingSampler = new QuboAnnealingSampler(100, 1000, heuristicLimit, seed);
+			return create(encodingSampler.getName() + "-" + encoding.getName(), instance -> instance.solveQUBOforMLSP(encoding, encodingSampler));
+		default:
+			throw new IllegalArgumentException("Unknown solver: " + name);
+		}
+	}
+	
+	/**
+	 * Returns a solver with the given name that solves instances with the given method
+	 **/
+	static MLSP_Solver create(String name, java.util.function.Consumer<MLSP_Instance> method) {
+		
+		return new MLSP_Solver() {
+			public String getName() {
+				return name;
+			}
+			
+			public void solve(MLSP_Instance instance) {
+				method.accept(instance);
+			}
+		};
+	}
+}
@@ -0,0 +1,422 @@
+import java.util.*;
+
+/* This program implements a tabu search for the MLSP, optionally combined with a large neighbourhood search. The search starts from
+ * a greedy construction, in which the teams of the most capacity-constrained clubs choose their HAP first. A move swaps the HAPs of
+ * two teams in the same league (as in MLSP_Annealer, which is used to keep the cached home counts), and in every iteration the best
+ * swap is made among the leagues that have a team in a club with a violation. After a swap, the two teams may not get their old HAP
+ * back for a random number of iterations, unless that leads to a new best solution (aspiration).
+ * If the large neighbourhood is enabled, the search is perturbed when the best solution did not improve for a number of iterations:
+ * some leagues related to a violated club are destroyed and repaired with the greedy construction, given the HAPs of all other teams.
+ * The search is anytime, every improving solution is passed to the listeners together with the time at which it was found.
+ */
+
+public class MLSP_TabuSearch {
+	
+	MLSP_Instance instance;
+	MLSP_Annealer state;		// The current assignment and its cached home counts
+	int leagueSize;
+	int numRounds;
+	int[] teamClub;
+	int[] teamLeague;
+	long[] hapMask;
+	int[] capacity;				// The capacity of club c in round r at position c*numRounds + r
+	int[] teamOrder;			// The teams in the order of the greedy construction
+	
+	int tenure = 10;			// A swapped team is tabu for between tenure and 2*tenure iterations
+	int destroyedLeagues = 0;	// The number of leagues destroyed by a perturbation, the large neighbourhood is off if 0
+	int stagnationLimit = 200;	// The number of iterations without a new best solution after which the search is perturbed
+	long timeLimitMillis = 10000;
+	int targetViolations = 0;
+	int lowerBound = 0;			// A lower bound on the violations, reported with the incumbents (see MLSP_LagrangianBound)
+	
+	int[] tabuUntil;			// The iteration until which team t may not get HAP h, at position t*leagueSize + h
+	boolean[] candidateLeague;
+	int[] destroyed;
+	long[] usedHaps;
+	int[] repairCount;
+	int[] repairHap;
+	
+	int[] bestHap;
+	int bestViolations;
+	long iterations;
+	long perturbations;
+	long startTime;
+	ArrayList<MLSP_IncumbentListener> listeners = new ArrayList<MLSP_IncumbentListener>();
+	
+	Random rd;
+	
+	/**
+	 * Creates the tabu search for the given instance, the seed is used for tie breaking, tabu tenures and perturbations
+	 **/
+	public MLSP_TabuSearch(MLSP_Instance instance, long seed) {
+		
+		this.instance = instance;
+		this.state = new MLSP_Annealer(instance, seed);
+		this.leagueSize = instance.leagueSize;
+		this.numRounds = instance.numRounds;
+		this.teamClub = this.state.teamClub;
+		this.hapMask = this.state.hapMask;
+		this.capacity = this.state.capacity;
+		this.rd = new Random(seed);
+		
+		this.teamLeague = new int[instance.numTeams];
+		for(int l = 0; l < instance.numLeagues; l++) {
+			for(int t : instance.leagues[l]) {
+				this.teamLeague[t] = l;
+			}
+		}
+		
+		this.tabuUntil = new int[instance.numTeams * this.leagueSize];
+		this.candidateLeague = new boolean[instance.numLeagues];
+		this.destroyed = new int[instance.numLeagues];
+		this.usedHaps = new long[instance.numLeagues];
+		this.repairCount = new int[this.capacity.length];
+		this.repairHap = new int[instance.numTeams];
+		this.teamOrder = greedyOrder();
+	}
+	
+	/**
+	 * This method sets the stop condition: the search stops after the time limit, or as soon as the target is reached
+	 **/
+	public void setStopCondition(long timeLimitMillis, int targetViolations) {
+		
+		this.timeLimitMillis = timeLimitMillis;
+		this.targetViolations = targetViolations;
+	}
+	
+	/**
+	 * This method sets a proven lower bound on the number of violations, the search stops as soon as it is reached
+	 **/
+	public void setLowerBound(int lowerBound) {
+		
+		this.lowerBound = lowerBound;
+		this.targetViolations = Math.max(this.targetViolations, lowerBound);
+	}
+	
+	/**
+	 * This method sets the minimum number of iterations during which a swapped team may not get its old HAP back
+	 **/
+	public void setTenure(int tenure) {
+		this.tenure = tenure;
+	}
+	
+	/**
+	 * This method enables the large neighbourhood: after stagnationLimit iterations without a new best solution, the given number
+	 * of leagues is destroyed and repaired. A number of 0 leagues disables the large neighbourhood.
+	 **/
+	public void setLargeNeighbourhood(int destroyedLeagues, int stagnationLimit) {
+		
+		this.destroyedLeagues = destroyedLeagues;
+		this.stagnationLimit = stagnationLimit;
+	}
+	
+	/**
+	 * This method adds a listener that is informed of every improving solution
+	 **/
+	public void addListener(MLSP_IncumbentListener listener) {
+		this.listeners.add(listener);
+	}
+	
+	/**
+	 * Returns the teams in the order in which the greedy construction places them: the teams of clubs with the highest ratio of
+	 * teams to (lowest) capacity first, and the teams that belong to no club last
+	 **/
+	int[] greedyOrder() {
+		
+		double[] tightness = new double[this.instance.numClubs];
+		for(int c = 0; c < this.instance.numClubs; c++) {
+			int minCapacity = Integer.MAX_VALUE;
+			for(int r = 0; r < this.numRounds; r++) {
+				minCapacity = Math.min(minCapacity, this.capacity[c * this.numRounds + r]);
+			}
+			tightness[c] = this.instance.clubSizes[c] / (minCapacity + 1.0);
+		}
+		
+		Integer[] order = new Integer[this.instance.numTeams];
+		for(int t = 0; t < order.length; t++) {
+			order[t] = t;
+		}
+		Arrays.sort(order, (a, b) -> {
+			double ta = this.teamClub[a] >= 0 ? tightness[this.teamClub[a]] : -1;
+			double tb = this.teamClub[b] >= 0 ? tightness[this.teamClub[b]] : -1;
+			return Double.compare(tb, ta);
+		});
+		return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+	}
+	
+	/**
+	 * This method assigns HAPs to the teams of the marked leagues, given the home counts of all other teams. The teams are placed in
+	 * greedy order, and each team gets the unused HAP of its league that adds the fewest violations (ties are broken at random).
+	 * The HAPs are written into hapOfTeam and the counts are updated.
+	 **/
+	void greedyAssign(boolean[] marked, int[] homeCount, int[] hapOfTeam) {
+		
+		long[] usedHaps = this.usedHaps;
+		Arrays.fill(usedHaps, 0);
+		for(int t : this.teamOrder) {
+			int l = this.teamLeague[t];
+			if(!marked[l]) {
+				continue;
+			}
+			int c = this.teamClub[t];
+			int bestH = -1;
+			int bestCost = Integer.MAX_VALUE;
+			int offset = this.rd.nextInt(this.leagueSize);
+			for(int i = 0; i < this.leagueSize; i++) {
+				int h = (i + offset) % this.leagueSize;
+				if((usedHaps[l] & (1L << h)) != 0) {
+					continue;
+				}
+				int cost = 0;
+				if(c >= 0) {
+					int base = c * this.numRounds;
+					for(long rounds = this.hapMask[h]; rounds != 0; rounds &= rounds - 1) {
+						int k = base + Long.numberOfTrailingZeros(rounds);
+						if(homeCount[k] >= this.capacity[k]) {
+							cost++;
+						}
+					}
+				}
+				if(cost < bestCost) {
+					bestCost = cost;
+					bestH = h;
+				}
+			}
+			usedHaps[l] |= 1L << bestH;
+			hapOfTeam[t] = bestH;
+			if(c >= 0) {
+				this.state.model.addHomeGames(homeCount, c, bestH, 1);
+			}
+		}
+	}
+	
+	/**
+	 * This method runs the search until the stop condition holds, and returns the best solution found
+	 **/
+	public MLSP_Incumbent solve() {
+		
+		this.startTime = System.nanoTime();
+		this.iterations = 0;
+		this.perturbations = 0;
+		
+		// Greedy construction of the starting solution
+		Arrays.fill(this.candidateLeague, true);
+		Arrays.fill(this.repairCount, 0);
+		greedyAssign(this.candidateLeague, this.repairCount, this.repairHap);
+		this.state.setAssignment(this.repairHap);
+		this.bestHap = this.state.hap.clone();
+		this.bestViolations = Integer.MAX_VALUE;
+		MLSP_Incumbent best = improve();
+		
+		Arrays.fill(this.tabuUntil, 0);
+		long lastImprovement = 0;
+		while(this.bestViolations > this.targetViolations && !timeUp()) {
+			this.iterations++;
+			if(!tabuStep()) {
+				lastImprovement = this.iterations;
+				perturb();
+			}
+			if(this.state.violations < this.bestViolations) {
+				best = improve();
+				lastImprovement = this.iterations;
+			}
+			else if(this.destroyedLeagues > 0 && this.iterations - lastImprovement >= this.stagnationLimit) {
+				lastImprovement = this.iterations;
+				perturb();
+				if(this.state.violations < this.bestViolations) {
+					best = improve();
+				}
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Stores the current solution as best solution and informs the listeners
+	 **/
+	MLSP_Incumbent improve() {
+		
+		this.bestViolations = this.state.violations;
+		System.arraycopy(this.state.hap, 0, this.bestHap, 0, this.bestHap.length);
+		MLSP_Incumbent incumbent = new MLSP_Incumbent(this.bestViolations, this.bestHap, System.nanoTime() - this.startTime, this.lowerBound);
+		for(MLSP_IncumbentListener listener : this.listeners) {
+			listener.newIncumbent(incumbent);
+		}
+		return incumbent;
+	}
+	
+	/**
+	 * Performs one iteration of the tabu search: the best allowed swap within the leagues that have a team in a violated club is
+	 * made, even if it increases the number of violations. Returns false if no swap was allowed.
+	 **/
+	boolean tabuStep() {
+		
+		markViolatedLeagues();
+		int[] hap = this.state.hap;
+		int bestA = -1;
+		int bestB = -1;
+		int bestDelta = Integer.MAX_VALUE;
+		int ties = 0;
+		for(int l = 0; l < this.candidateLeague.length; l++) {
+			if(!this.candidateLeague[l]) {
+				continue;
+			}
+			int[] league = this.instance.leagues[l];
+			for(int i = 0; i < league.length; i++) {
+				int a = league[i];
+				for(int j = i + 1; j < league.length; j++) {
+					int b = league[j];
+					if(this.teamClub[a] == this.teamClub[b]) {
+						continue;
+					}
+					int delta = this.state.swapDelta(a, b);
+					this.state.movesEvaluated++;
+					if(delta > bestDelta) {
+						continue;
+					}
+					boolean tabu = this.tabuUntil[a * this.leagueSize + hap[b]] > this.iterations
+							|| this.tabuUntil[b * this.leagueSize + hap[a]] > this.iterations;
+					if(tabu && this.state.violations + delta >= this.bestViolations) {
+						continue;
+					}
+					if(delta < bestDelta) {
+						bestDelta = delta;
+						ties = 1;
+						bestA = a;
+						bestB = b;
+					}
+					else if(this.rd.nextInt(++ties) == 0) {
+						bestA = a;
+						bestB = b;
+					}
+				}
+			}
+		}
+		if(bestA < 0) {
+			return false;
+		}
+		
+		this.tabuUntil[bestA * this.leagueSize + hap[bestA]] = (int) this.iterations + this.tenure + this.rd.nextInt(this.tenure + 1);
+		this.tabuUntil[bestB * this.leagueSize + hap[bestB]] = (int) this.iterations + this.tenure + this.rd.nextInt(this.tenure + 1);
+		this.state.applySwap(bestA, bestB, bestDelta);
+		this.state.movesAccepted++;
+		return true;
+	}
+	
+	/**
+	 * Marks the leagues that have a team in a club with a violation in some round
+	 **/
+	void markViolatedLeagues() {
+		
+		Arrays.fill(this.candidateLeague, false);
+		for(int t = 0; t < this.teamClub.length; t++) {
+			int c = this.teamClub[t];
+			if(c < 0 || this.candidateLeague[this.teamLeague[t]]) {
+				continue;
+			}
+			int base = c * this.numRounds;
+			for(int r = 0; r < this.numRounds; r++) {
+				if(this.state.homeCount[base + r] > this.capacity[base + r]) {
+					this.candidateLeague[this.teamLeague[t]] = true;
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Destroys a number of leagues and repairs them with the greedy construction. The first league has a team in a violated club,
+	 * and every next league holds a team of the same club as a random team of a league destroyed before, such that their HAPs can be
+	 * rearranged together. The repaired HAPs are realised as swaps, so the cached home counts stay up to date.
+	 **/
+	void perturb() {
+		
+		this.perturbations++;
+		markViolatedLeagues();
+		int first = -1;
+		int numViolated = 0;
+		for(int l = 0; l < this.candidateLeague.length; l++) {
+			if(this.candidateLeague[l] && this.rd.nextInt(++numViolated) == 0) {
+				first = l;
+			}
+		}
+		if(first < 0) {
+			first = this.rd.nextInt(this.candidateLeague.length);
+		}
+		Arrays.fill(this.candidateLeague, false);
+		this.candidateLeague[first] = true;
+		this.destroyed[0] = first;
+		
+		int numDestroyed = 1;
+		int target = Math.min(Math.max(1, this.destroyedLeagues), this.candidateLeague.length);
+		while(numDestroyed < target) {
+			int[] league = this.instance.leagues[this.destroyed[this.rd.nextInt(numDestroyed)]];
+			int c = this.teamClub[league[this.rd.nextInt(league.length)]];
+			int next = -1;
+			if(c >= 0) {
+				int[] club = this.instance.clubs.get(c);
+				next = this.teamLeague[club[this.rd.nextInt(club.length)]];
+			}
+			if(next < 0 || this.candidateLeague[next]) {
+				next = this.rd.nextInt(this.candidateLeague.length);
+			}
+			if(!this.candidateLeague[next]) {
+				this.candidateLeague[next] = true;
+				this.destroyed[numDestroyed++] = next;
+			}
+		}
+		
+		// Repair with the home counts of the teams outside the destroyed leagues
+		System.arraycopy(this.state.homeCount, 0, this.repairCount, 0, this.repairCount.length);
+		for(int k = 0; k < numDestroyed; k++) {
+			for(int t : this.instance.leagues[this.destroyed[k]]) {
+				if(this.teamClub[t] >= 0) {
+					this.state.model.addHomeGames(this.repairCount, this.teamClub[t], this.state.hap[t], -1);
+				}
+			}
+		}
+		greedyAssign(this.candidateLeague, this.repairCount, this.repairHap);
+		
+		for(int k = 0; k < numDestroyed; k++) {
+			int[] league = this.instance.leagues[this.destroyed[k]];
+			for(int i = 0; i < league.length; i++) {
+				int a = league[i];
+				for(int j = i + 1; j < league.length && this.state.hap[a] != this.repairHap[a]; j++) {
+					int b = league[j];
+					if(this.state.hap[b] == this.repairHap[a]) {
+						this.state.applySwap(a, b, this.state.swapDelta(a, b));
+					}
+				}
+			}
+		}
+		Arrays.fill(this.tabuUntil, 0);
+	}
+	
+	/**
+	 * Returns true if the time limit has passed
+	 **/
+	boolean timeUp() {
+		return System.nanoTime() - this.startTime >= this.timeLimitMillis * 1000000L;
+	}
+	
+	/**
+	 * Returns the number of iterations of the last call to solve
+	 **/
+	public long getIterations() {
+		return this.iterations;
+	}
+	
+	/**
+	 * Returns the number of perturbations of the last call to solve
+	 **/
+	public long getPerturbations() {
+		return this.perturbations;
+	}
+	
+	/**
+	 * Returns the best assignment of teams to HAPs found
+	 **/
+	public int[] getBestAssignment() {
+		return this.bestHap.clone();
+	}
+}
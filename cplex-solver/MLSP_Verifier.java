@@ -0,0 +1,405 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/* This program verifies solution files independently of the solver that wrote them. It reads the solution files of the Java solvers
+ * (CPLEX-Sol-*, SA-Sol-*, TS-Sol-*, ..., written by outputSolution) and of the Python scripts (SA-/QA-/HS-QUBO*-Sol-*), and for each:
+ * - checks that every team has exactly one HAP and that every HAP is used exactly once in every league (QUBO samples need not satisfy
+ *   these constraints, so teams may have no HAP or several HAPs),
+ * - recomputes the total violations, that is, the sum over all clubs and rounds of max(0, home games - capacity), where the home games
+ *   follow from the (team, HAP) pairs of the club/round index,
+ * - compares the result with the number of violations stated in the file,
+ * - optionally, reports the gap to the Lagrangian lower bound of the instance (see MLSP_LagrangianBound), which is computed in at most
+ *   the given number of milliseconds per instance.
+ * The instance is the part of the file name after "-Sol-", and is read from the data folder once for all its solution files. The
+ * files are verified in parallel, and one CSV row is written per file. The program is not interactive, the options are given as
+ * arguments:
+ *
+ *   java MLSP_Verifier [--dir <folder>] [--files <glob>] [--threads <n>] [--out <file.csv>] [--bound <ms>] [--store <file>]
+ *
+ * By default all files matching *-Sol-* in the parent folder (where outputSolution writes) and in the data folder (where the QUBO
+ * scripts write) are verified, except the temporary files (*.tmp) that MLSP_SolutionWriter writes while a solver is running. With --store, the records of the given
+ * MLSP_ResultStore whose instance matches the glob (*.txt by default) are verified instead, without parsing any text; their file
+ * column holds instance|solver|seed.
+ */
+
+public class MLSP_Verifier {
+	
+	/* The outcome of verifying one solution file */
+	static class Result {
+		String file;
+		String instance;
+		String backend;
+		double reportedViolations = Double.NaN;
+		int violations;
+		int teamsWithoutHap;
+		int teamsWithSeveralHaps;
+		int hapConflicts;				// Pairs of a league and a HAP for which the HAP is not used by exactly one team of the league
+		int lowerBound = -1;			// The lower bound of the instance, -1 if not computed
+		String error;
+		
+		/**
+		 * Returns OK, INFEASIBLE if the assignment constraints are violated, MISMATCH if the stated violations differ from the
+		 * recomputed violations, or ERROR if the file could not be verified
+		 **/
+		String status() {
+			
+			if(this.error != null) {
+				return "ERROR";
+			}
+			if(this.teamsWithoutHap > 0 || this.teamsWithSeveralHaps > 0 || this.hapConflicts > 0) {
+				return "INFEASIBLE";
+			}
+			if(Double.isNaN(this.reportedViolations) || Math.abs(this.reportedViolations - this.violations) > 1e-6) {
+				return "MISMATCH";
+			}
+			return "OK";
+		}
+	}
+	
+	String[] dirs = {"../", "../data"};	// The folders searched for solution files, --dir replaces them by one folder
+	String glob = "*-Sol-*";
+	int threads = Runtime.getRuntime().availableProcessors();
+	String out = null;
+	long boundMillis = 0;
+	String store = null;
+	
+	ConcurrentHashMap<String, Future<MLSP_Instance>> instances = new ConcurrentHashMap<String, Future<MLSP_Instance>>();
+	ConcurrentHashMap<String, Integer> bounds = new ConcurrentHashMap<String, Integer>();
+	
+	public static void main(String args[]) {
+		
+		MLSP_Verifier verifier = new MLSP_Verifier();
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			switch(args[i]) {
+			case "--dir":
+				verifier.dirs = new String[] {args[i + 1]};
+				break;
+			case "--files":
+				verifier.glob = args[i + 1];
+				break;
+			case "--threads":
+				verifier.threads = Integer.parseInt(args[i + 1]);
+				break;
+			case "--out":
+				verifier.out = args[i + 1];
+				break;
+			case "--bound":
+				verifier.boundMillis = Long.parseLong(args[i + 1]);
+				break;
+			case "--store":
+				verifier.store = args[i + 1];
+				break;
+			default:
+				System.out.println("Unknown option: " + args[i]);
+				return;
+			}
+		}
+		
+		try {
+			verifier.run();
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * This method verifies all matching files (or records of the store) and writes one row per file, followed by a summary
+	 **/
+	void run() throws IOException, InterruptedException {
+		
+		List<Callable<Result>> tasks = new ArrayList<Callable<Result>>();
+		MLSP_ResultStore resultStore = null;
+		if(this.store != null) {
+			resultStore = MLSP_ResultStore.open(new File(this.store), false);
+			PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + (this.glob.equals("*-Sol-*") ? "*.txt" : this.glob));
+			for(MLSP_ResultStore.Record record : resultStore.records()) {
+				if(matcher.matches(Paths.get(record.getInstance()))) {
+					tasks.add(() -> verifyRecord(record));
+				}
+			}
+			if(tasks.isEmpty()) {
+				System.out.println("No records in " + this.store + " match " + this.glob);
+				resultStore.close();
+				return;
+			}
+		}
+		else {
+			PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + this.glob);
+			ArrayList<File> files = new ArrayList<File>();
+			for(String dir : this.dirs) {
+				// The temporary files of MLSP_SolutionWriter may be partially written, and are skipped
+				String[] names = new File(dir).list((folder, name) -> name.contains("-Sol-") && !name.endsWith(".tmp")
+						&& matcher.matches(Paths.get(name)));
+				if(names != null) {
+					for(String name : names) {
+						files.add(new File(dir, name));
+					}
+				}
+			}
+			if(files.isEmpty()) {
+				System.out.println("No solution files in " + String.join(" or ", this.dirs) + " match " + this.glob);
+				return;
+			}
+			files.sort(Comparator.comparing(File::getName));
+			for(File file : files) {
+				tasks.add(() -> verifyFile(file));
+			}
+		}
+		
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+		List<Future<Result>> results = new ArrayList<Future<Result>>();
+		for(Callable<Result> task : tasks) {
+			results.add(pool.submit(task));
+		}
+		
+		Writer writer = this.out == null ? new OutputStreamWriter(System.out) : new BufferedWriter(new FileWriter(this.out));
+		writer.write("file,instance,backend,reportedViolations,violations,teamsWithoutHap,teamsWithSeveralHaps,hapConflicts,lowerBound,gap,status,error\n");
+		TreeMap<String, Integer> statusCounts = new TreeMap<String, Integer>();
+		for(Future<Result> future : results) {
+			Result result;
+			try {
+				result = future.get();
+			}
+			catch (ExecutionException e) {
+				throw new IOException(e.getCause());
+			}
+			writer.write(result.file + "," + result.instance + "," + result.backend + "," + result.reportedViolations + "," + result.violations
+					+ "," + result.teamsWithoutHap + "," + result.teamsWithSeveralHaps + "," + result.hapConflicts + "," + result.lowerBound + "," + (result.lowerBound < 0 ? "" : gap(result.violations, result.lowerBound))
+					+ "," + result.status()
+					+ "," + (result.error == null ? "" : "\"" + result.error.replace("\"", "'") + "\"") + "\n");
+			statusCounts.merge(result.status(), 1, Integer::sum);
+		}
+		pool.shutdown();
+		writer.flush();
+		if(this.out != null) {
+			writer.close();
+		}
+		if(resultStore != null) {
+			resultStore.close();
+		}
+		System.out.printf("Verified %d %s of %d instances in %.1f ms: %s%n", tasks.size(), resultStore == null ? "files" : "records", this.instances.size(),
+				(System.nanoTime() - start) / 1e6, statusCounts);
+	}
+	
+	/**
+	 * Verifies one solution file, errors are stored in the result
+	 **/
+	Result verifyFile(File file) {
+		
+		String name = file.getName();
+		Result result = new Result();
+		result.file = name;
+		int split = name.indexOf("-Sol-");
+		result.backend = name.substring(0, split);
+		result.instance = name.substring(split + 5);
+		try {
+			verify(instanceFor(result.instance), file, result);
+			result.lowerBound = this.bounds.getOrDefault(result.instance, -1);
+		}
+		catch (IOException | RuntimeException e) {
+			result.error = e.toString();
+		}
+		return result;
+	}
+	
+	/**
+	 * Verifies one record of the result store, errors are stored in the result
+	 **/
+	Result verifyRecord(MLSP_ResultStore.Record record) {
+		
+		Result result = new Result();
+		result.file = MLSP_ResultStore.key(record.getInstance(), record.getSolver(), record.getSeed());
+		result.backend = record.getSolver();
+		result.instance = record.getInstance();
+		result.reportedViolations = record.getViolations();
+		try {
+			verify(instanceFor(result.instance), record.getSolution(), result);
+			result.lowerBound = this.bounds.getOrDefault(result.instance, -1);
+		}
+		catch (IOException | RuntimeException e) {
+			result.error = e.toString();
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the instance with the given file name, which is read only once even if several threads ask for it at the same time
+	 **/
+	MLSP_Instance instanceFor(String filename) throws IOException {
+		
+		FutureTask<MLSP_Instance> task = new FutureTask<MLSP_Instance>(() -> {
+			MLSP_Instance instance = MLSP_Instance.load(filename);
+			instance.getClubRoundIndex();	// Built before the instance is shared between threads
+			if(this.boundMillis > 0) {
+				this.bounds.put(filename, instance.computeLowerBound(this.boundMillis));
+			}
+			return instance;
+		});
+		Future<MLSP_Instance> future = this.instances.putIfAbsent(filename, task);
+		if(future == null) {
+			future = task;
+			task.run();
+		}
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+	}
+	
+	/**
+	 * This method verifies a solution file of the given instance and stores the outcome in the result
+	 **/
+	static void verify(MLSP_Instance instance, File file, Result result) throws IOException {
+		
+		if(instance.leagueSize > 64) {
+			throw new IllegalArgumentException("Leagues of more than 64 teams cannot be verified");
+		}
+		
+		// The HAPs assigned to each team, as bit mask
+		long[] haps = new long[instance.numTeams];
+		
+		BufferedReader br = new BufferedReader(new FileReader(file));
+		String line;
+		boolean found = false;
+		while(!found && (line = br.readLine()) != null) {
+			if(Double.isNaN(result.reportedViolations) && line.contains("violations") && line.indexOf(':') >= 0) {
+				result.reportedViolations = Double.parseDouble(line.substring(line.lastIndexOf(':') + 1).trim());
+			}
+			else if(line.startsWith("The allocation of teams to HAPs")) {
+				// Written by outputSolution: one row of x per team
+				for(int t = 0; t < instance.numTeams; t++) {
+					String[] values = nextLine(br).trim().split("\t");
+					for(int h = 0; h < values.length; h++) {
+						if(Double.parseDouble(values[h]) > 0.5) {
+							haps[t] |= 1L << h;
+						}
+					}
+				}
+				found = true;
+			}
+			else if(line.startsWith("The assignment of teams to HAPs")) {
+				// Written by the Python scripts: one line per team, with "Team t is assigned to HAP h" for every HAP of the team
+				for(int t = 0; t < instance.numTeams; t++) {
+					line = nextLine(br);
+					for(int at = line.indexOf("Team "); at >= 0; at = line.indexOf("Team ", at + 1)) {
+						int team = Integer.parseInt(line.substring(at + 5, line.indexOf(' ', at + 5))) - 1;
+						int hapAt = line.indexOf("HAP ", at) + 4;
+						int end = hapAt;
+						while(end < line.length() && Character.isDigit(line.charAt(end))) {
+							end++;
+						}
+						haps[team] |= 1L << (Integer.parseInt(line.substring(hapAt, end)) - 1);
+					}
+				}
+				found = true;
+			}
+		}
+		br.close();
+		if(!found) {
+			throw new EOFException("The solution file contains no assignment of teams to HAPs");
+		}
+		
+		checkAssignment(instance, haps, result);
+		result.violations = violations(instance, haps);
+	}
+	
+	/**
+	 * This method verifies a solution of the given instance in the encoding of MLSP_CompactSolution, and stores the outcome in the result
+	 **/
+	static void verify(MLSP_Instance instance, byte[] solution, Result result) {
+		
+		if(instance.leagueSize > 64) {
+			throw new IllegalArgumentException("Leagues of more than 64 teams cannot be verified");
+		}
+		
+		long[] haps = new long[instance.numTeams];
+		int[] hapOfTeam = MLSP_CompactSolution.decode(instance, solution);
+		for(int t = 0; t < instance.numTeams; t++) {
+			if(hapOfTeam[t] >= 0 && hapOfTeam[t] < instance.leagueSize) {
+				haps[t] |= 1L << hapOfTeam[t];
+			}
+		}
+		
+		checkAssignment(instance, haps, result);
+		result.violations = violations(instance, haps);
+	}
+	
+	/**
+	 * Returns the relative gap between the violations and the lower bound, computed as in MLSP_Incumbent
+	 **/
+	static double gap(int violations, int lowerBound) {
+		return (violations - lowerBound) / (1e-10 + violations);
+	}
+	
+	/**
+	 * Returns the next line, or throws an exception if the file ends early
+	 **/
+	static String nextLine(BufferedReader br) throws IOException {
+		
+		String line = br.readLine();
+		if(line == null) {
+			throw new EOFException("The solution file ends before all teams are listed");
+		}
+		return line;
+	}
+	
+	/**
+	 * Counts the teams without a HAP or with several HAPs, and the HAPs that are not used exactly once in a league
+	 **/
+	static void checkAssignment(MLSP_Instance instance, long[] haps, Result result) {
+		
+		for(int t = 0; t < instance.numTeams; t++) {
+			int count = Long.bitCount(haps[t]);
+			if(count == 0) {
+				result.teamsWithoutHap++;
+			}
+			else if(count > 1) {
+				result.teamsWithSeveralHaps++;
+			}
+		}
+		for(int l = 0; l < instance.numLeagues; l++) {
+			for(int h = 0; h < instance.leagueSize; h++) {
+				int users = 0;
+				for(int t : instance.leagues[l]) {
+					users += (int) (haps[t] >>> h) & 1;
+				}
+				if(users != 1) {
+					result.hapConflicts++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the total violations of the assignment, where a team with several HAPs counts the home games of all of them (as in the
+	 * QUBO scripts) and a team without a HAP never plays at home
+	 **/
+	static int violations(MLSP_Instance instance, long[] haps) {
+		
+		MLSP_ClubRoundIndex index = instance.getClubRoundIndex();
+		int total = 0;
+		for(int c = 0; c < instance.numClubs; c++) {
+			for(int r = 0; r < instance.numRounds; r++) {
+				int homeGames = 0;
+				for(int k = index.begin(c, r); k < index.end(c, r); k++) {
+					homeGames += (int) (haps[index.teams[k]] >>> index.haps[k]) & 1;
+				}
+				total += Math.max(0, homeGames - instance.roundCapacities[c][r]);
+			}
+		}
+		return total;
+	}
+}
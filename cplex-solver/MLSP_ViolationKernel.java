@@ -0,0 +1,213 @@
+import java.util.*;
+
+/* This program evaluates the objective of the MLSP, the sum over all clubs c and rounds r of max(0, home games - capacity[c][r]),
+ * for complete assignments of teams to HAPs. It is meant for callers that evaluate many assignments from scratch, such as
+ * population-based searches or the scoring of QUBO samples, while the local searches keep their home counts up to date with
+ * MLSP_BitModel instead. Two paths are provided:
+ * - A scalar path for one assignment, which adds a home game to its club in every round in which the HAP of a team plays at home,
+ *   as MLSP_BitModel does, but with the rounds stored as lists instead of bit masks.
+ * - A batched path for many assignments, which works on tiles of at most BATCH assignments with the candidate as innermost index
+ *   (structure of arrays). Per club, the teams with each HAP are counted for all candidates of the tile, after which the home games
+ *   and violations of every round are sums and maxima over contiguous arrays of candidates. If the HAPs at home in a round are
+ *   exactly those away in another round (as in the mirrored HAP sets of the Data Generator), the home games of the second round
+ *   are the club size minus those of the first, which halves the work.
+ * The sums and maxima over the candidates use the Vector API (see MLSP_ViolationVectors) when the JVM runs with
+ * --add-modules jdk.incubator.vector, and scalar loops otherwise. Unlike MLSP_BitModel, the kernel supports any number of rounds.
+ * Capacities are always read from the instance.
+ */
+
+public class MLSP_ViolationKernel {
+	
+	static final int BATCH = 64;
+	
+	// The Vector API is only used if its module is present, otherwise MLSP_ViolationVectors cannot be loaded
+	static final boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+			&& MLSP_ViolationVectors.fits(BATCH);
+	
+	final int numClubs;
+	final int numRounds;
+	final int leagueSize;
+	final int[] teamClub;			// The club each team belongs to, or -1 if the team belongs to no club
+	final ArrayList<int[]> clubs;
+	final int[][] homeRounds;		// The rounds in which each HAP plays at home
+	final int[][] homeHaps;			// The HAPs that play at home in each round
+	final int[] complement;			// A round in which exactly the HAPs that are away in round r play at home, or -1 if none
+	final int[][] roundCapacities;	// The capacities of the instance, shared such that changes made with setCapacity are seen
+	
+	/**
+	 * Builds the kernel for the instance
+	 **/
+	public MLSP_ViolationKernel(MLSP_Instance instance) {
+		
+		this.numClubs = instance.numClubs;
+		this.numRounds = instance.numRounds;
+		this.leagueSize = instance.leagueSize;
+		this.teamClub = instance.getTeamClubs();
+		this.clubs = instance.clubs;
+		this.roundCapacities = instance.roundCapacities;
+		
+		this.homeRounds = new int[this.leagueSize][];
+		this.homeHaps = new int[this.numRounds][];
+		for(int h = 0; h < this.leagueSize; h++) {
+			int count = 0;
+			for(int r = 0; r < this.numRounds; r++) {
+				count += instance.U[h][r];
+			}
+			this.homeRounds[h] = new int[count];
+			int k = 0;
+			for(int r = 0; r < this.numRounds; r++) {
+				if(instance.U[h][r] == 1) {
+					this.homeRounds[h][k++] = r;
+				}
+			}
+		}
+		for(int r = 0; r < this.numRounds; r++) {
+			int count = 0;
+			for(int h = 0; h < this.leagueSize; h++) {
+				count += instance.U[h][r];
+			}
+			this.homeHaps[r] = new int[count];
+			int k = 0;
+			for(int h = 0; h < this.leagueSize; h++) {
+				if(instance.U[h][r] == 1) {
+					this.homeHaps[r][k++] = h;
+				}
+			}
+		}
+		
+		// Rounds are paired at most once, as several rounds may have the same HAPs at home
+		this.complement = new int[this.numRounds];
+		Arrays.fill(this.complement, -1);
+		for(int r = 0; r < this.numRounds; r++) {
+			for(int s = r + 1; s < this.numRounds && this.complement[r] < 0; s++) {
+				boolean complementary = this.complement[s] < 0;
+				for(int h = 0; h < this.leagueSize && complementary; h++) {
+					complementary = instance.U[h][s] == 1 - instance.U[h][r];
+				}
+				if(complementary) {
+					this.complement[r] = s;
+					this.complement[s] = r;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns an array for the home counts of all clubs in all rounds, club c at positions c*numRounds up to (c+1)*numRounds
+	 **/
+	public int[] newHomeCounts() {
+		return new int[this.numClubs * this.numRounds];
+	}
+	
+	/**
+	 * This method fills homeCount with the number of home games of every club in every round under an assignment of teams to HAPs
+	 **/
+	public void countHomeGames(int[] hapOfTeam, int[] homeCount) {
+		
+		Arrays.fill(homeCount, 0);
+		for(int t = 0; t < hapOfTeam.length; t++) {
+			int c = this.teamClub[t];
+			if(c >= 0) {
+				int base = c * this.numRounds;
+				for(int r : this.homeRounds[hapOfTeam[t]]) {
+					homeCount[base + r]++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the total number of violations for the given home counts
+	 **/
+	public int violations(int[] homeCount) {
+		
+		int total = 0;
+		for(int c = 0; c < this.numClubs; c++) {
+			int[] cap = this.roundCapacities[c];
+			int base = c * this.numRounds;
+			for(int r = 0; r < this.numRounds; r++) {
+				total += Math.max(0, homeCount[base + r] - cap[r]);
+			}
+		}
+		return total;
+	}
+	
+	/**
+	 * Returns the total number of violations of one assignment, using homeCount as scratch space
+	 **/
+	public int evaluate(int[] hapOfTeam, int[] homeCount) {
+		
+		countHomeGames(hapOfTeam, homeCount);
+		return violations(homeCount);
+	}
+	
+	/**
+	 * Returns the total number of violations of every assignment
+	 **/
+	public int[] evaluate(int[][] assignments) {
+		
+		int[] violations = new int[assignments.length];
+		evaluate(assignments, 0, assignments.length, violations);
+		return violations;
+	}
+	
+	/**
+	 * This method stores the total number of violations of the assignments from up to (but not including) to in violations, at the
+	 * same positions. Disjoint ranges can be evaluated by different threads at the same time.
+	 **/
+	public void evaluate(int[][] assignments, int from, int to, int[] violations) {
+		
+		int[] hapCount = new int[this.leagueSize * BATCH];	// The teams of the club with HAP h in candidate b at h*BATCH + b
+		int[] home = new int[BATCH];
+		int[] total = new int[BATCH];
+		for(int first = from; first < to; first += BATCH) {
+			// The loops over the candidates always run over a whole tile, such that their length is a constant. The totals of the
+			// candidates beyond the last one are not meaningful (a complementary round counts violations for their zero home
+			// games), and are not copied.
+			int size = Math.min(BATCH, to - first);
+			Arrays.fill(total, 0);
+			for(int c = 0; c < this.numClubs; c++) {
+				Arrays.fill(hapCount, 0);
+				int[] club = this.clubs.get(c);
+				for(int b = 0; b < size; b++) {
+					int[] hapOfTeam = assignments[first + b];
+					for(int t : club) {
+						hapCount[hapOfTeam[t] * BATCH + b]++;
+					}
+				}
+				int[] cap = this.roundCapacities[c];
+				for(int r = 0; r < this.numRounds; r++) {
+					int other = this.complement[r];
+					if(other >= 0 && other < r) {
+						// Counted together with the complementary round
+						continue;
+					}
+					if(VECTOR_API) {
+						MLSP_ViolationVectors.addRound(hapCount, BATCH, this.homeHaps[r], cap[r], other >= 0,
+								other >= 0 ? club.length - cap[other] : 0, total);
+						continue;
+					}
+					Arrays.fill(home, 0);
+					for(int h : this.homeHaps[r]) {
+						int base = h * BATCH;
+						for(int b = 0; b < BATCH; b++) {
+							home[b] += hapCount[base + b];
+						}
+					}
+					int capacity = cap[r];
+					for(int b = 0; b < BATCH; b++) {
+						total[b] += Math.max(0, home[b] - capacity);
+					}
+					if(other >= 0) {
+						// Every team of the club plays at home in exactly one of the two rounds
+						int otherCapacity = club.length - cap[other];
+						for(int b = 0; b < BATCH; b++) {
+							total[b] += Math.max(0, otherCapacity - home[b]);
+						}
+					}
+				}
+			}
+			System.arraycopy(total, 0, violations, first, size);
+		}
+	}
+}
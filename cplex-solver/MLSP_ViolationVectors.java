@@ -0,0 +1,41 @@
+import jdk.incubator.vector.*;
+
+/* This program holds the part of the batched path of MLSP_ViolationKernel that uses the Vector API (jdk.incubator.vector). It is only
+ * loaded when the module is present, that is, when the JVM runs with --add-modules jdk.incubator.vector, and otherwise the kernel
+ * uses its scalar loops. A round is evaluated for SPECIES.length() candidates at a time: the teams of the club with the HAPs that
+ * play at home are added up in one vector, which stays in a register until the violations of the round (and of the complementary
+ * round) are added to the totals, instead of going through an array of home games as in the scalar loops.
+ */
+
+public class MLSP_ViolationVectors {
+	
+	static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+	
+	/**
+	 * Returns true if tiles of the given number of candidates consist of whole vectors
+	 **/
+	static boolean fits(int batch) {
+		return batch % SPECIES.length() == 0;
+	}
+	
+	/**
+	 * Adds the violations of one round of a club to total[b] for every candidate b of the tile. The teams of the club with HAP h in
+	 * candidate b are at hapCount[h*batch + b], and haps are the HAPs at home in the round. If the round is paired with a
+	 * complementary round, the violations of that round with otherCapacity = club size - its capacity are added as well.
+	 **/
+	static void addRound(int[] hapCount, int batch, int[] haps, int capacity, boolean paired, int otherCapacity, int[] total) {
+		
+		for(int b = 0; b < batch; b += SPECIES.length()) {
+			IntVector home = IntVector.zero(SPECIES);
+			for(int h : haps) {
+				home = home.add(IntVector.fromArray(SPECIES, hapCount, h * batch + b));
+			}
+			IntVector sum = IntVector.fromArray(SPECIES, total, b).add(home.sub(capacity).max(0));
+			if(paired) {
+				// Every team of the club plays at home in exactly one of the two rounds
+				sum = sum.add(home.neg().add(otherCapacity).max(0));
+			}
+			sum.intoArray(total, b);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+import java.util.*;
+
+/* This program samples a QUBO with simulated annealing, in the same way as neal.SimulatedAnnealingSampler in the Python scripts:
+ * every read starts from a random sample and makes a number of sweeps over all variables, in which every variable is flipped with
+ * the Metropolis criterion, while the inverse temperature increases geometrically. As in neal, the hottest inverse temperature
+ * accepts the largest possible increase in energy with probability 1/2, and the coldest accepts the smallest coefficient with
+ * probability 1/100. The local field of every variable is kept up to date, such that a flip costs the number of its neighbours.
+ * The time limit is checked after every sweep: when it has passed, the running read ends with one sweep at zero temperature (only
+ * flips that do not increase the energy), and no new read is started. Every call starts from the seed, so the samples of a QUBO
+ * do not depend on earlier calls and one sampler can be shared by several threads.
+ */
+
+public class QuboAnnealingSampler implements QuboSampler {
+	
+	int numReads;
+	int numSweeps;
+	long timeLimitMillis;
+	long seed;
+	
+	/**
+	 * Creates a sampler that makes the given number of reads of numSweeps sweeps each, or fewer when the time limit passes
+	 **/
+	public QuboAnnealingSampler(int numReads, int numSweeps, long timeLimitMillis, long seed) {
+		
+		this.numReads = numReads;
+		this.numSweeps = numSweeps;
+		this.timeLimitMillis = timeLimitMillis;
+		this.seed = seed;
+	}
+	
+	public String getName() {
+		return "SA";
+	}
+	
+	public byte[] sample(QuboMatrix qubo) {
+		
+		byte[] best = null;
+		double bestEnergy = Double.POSITIVE_INFINITY;
+		for(byte[] x : sampleAll(qubo)) {
+			double energy = qubo.energy(x);
+			if(energy < bestEnergy) {
+				bestEnergy = energy;
+				best = x;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Returns the final sample of every read
+	 **/
+	public List<byte[]> sampleAll(QuboMatrix qubo) {
+		
+		long deadline = System.currentTimeMillis() + this.timeLimitMillis;
+		Random rd = new Random(this.seed);
+		int n = qubo.numVars;
+		
+		// Both triangles of the couplers, such that the neighbours of every variable are in one row
+		double[] linear = new double[n];
+		int[] degree = new int[n + 1];
+		for(int i = 0; i < n; i++) {
+			for(int k = qubo.rowStart[i]; k < qubo.rowStart[i + 1]; k++) {
+				int j = qubo.columns[k];
+				if(j == i) {
+					linear[i] = qubo.values[k];
+				}
+				else {
+					degree[i + 1]++;
+					degree[j + 1]++;
+				}
+			}
+		}
+		for(int i = 0; i < n; i++) {
+			degree[i + 1] += degree[i];
+		}
+		int[] neighbours = new int[degree[n]];
+		double[] couplings = new double[degree[n]];
+		int[] fill = Arrays.copyOf(degree, n);
+		for(int i = 0; i < n; i++) {
+			for(int k = qubo.rowStart[i]; k < qubo.rowStart[i + 1]; k++) {
+				int j = qubo.columns[k];
+				if(j != i) {
+					neighbours[fill[i]] = j;
+					couplings[fill[i]++] = qubo.values[k];
+					neighbours[fill[j]] = i;
+					couplings[fill[j]++] = qubo.values[k];
+				}
+			}
+		}
+		
+		double maxDelta = 0;
+		for(int i = 0; i < n; i++) {
+			double delta = Math.abs(linear[i]);
+			for(int k = degree[i]; k < degree[i + 1]; k++) {
+				delta += Math.abs(couplings[k]);
+			}
+			maxDelta = Math.max(maxDelta, delta);
+		}
+		double minDelta = qubo.getMinAbsCoefficient();
+		double betaHot = maxDelta == 0 ? 1 : Math.log(2) / maxDelta;
+		double betaCold = minDelta == 0 ? 1 : Math.log(100) / minDelta;
+		double factor = Math.pow(betaCold / betaHot, 1.0 / Math.max(1, this.numSweeps - 1));
+		
+		ArrayList<byte[]> samples = new ArrayList<byte[]>();
+		byte[] x = new byte[n];
+		double[] field = new double[n];
+		for(int read = 0; read < this.numReads && (samples.isEmpty() || System.currentTimeMillis() < deadline); read++) {
+			for(int i = 0; i < n; i++) {
+				x[i] = (byte) rd.nextInt(2);
+			}
+			Arrays.fill(field, 0);
+			for(int i = 0; i < n; i++) {
+				if(x[i] == 1) {
+					for(int k = degree[i]; k < degree[i + 1]; k++) {
+						field[neighbours[k]] += couplings[k];
+					}
+				}
+			}
+			
+			double beta = betaHot;
+			for(int s = 0; s < this.numSweeps; s++) {
+				if(System.currentTimeMillis() >= deadline) {
+					// The last sweep of the read, at zero temperature such that the sample ends in a local minimum
+					s = this.numSweeps - 1;
+					beta = Double.POSITIVE_INFINITY;
+				}
+				for(int i = 0; i < n; i++) {
+					double delta = (1 - 2 * x[i]) * (linear[i] + field[i]);
+					if(delta <= 0 || rd.nextDouble() < Math.exp(-beta * delta)) {
+						int change = 1 - 2 * x[i];
+						x[i] ^= 1;
+						for(int k = degree[i]; k < degree[i + 1]; k++) {
+							field[neighbours[k]] += change * couplings[k];
+						}
+					}
+				}
+				beta *= factor;
+			}
+			
+			samples.add(x.clone());
+		}
+		return samples;
+	}
+}
@@ -0,0 +1,432 @@
+import java.util.*;
+
+/* This program builds a QUBO for the MLSP directly from the data of an MLSP_Instance, without the symbolic expansion of pyqubo.
+ * Variable x[t][h] gets index t*leagueSize + h. Coefficients are accumulated in a hash table with primitive long keys (encoding the
+ * pair of variables) and double values, and are converted to a QuboMatrix in CSR format when the QUBO is complete.
+ */
+
+public class QuboBuilder {
+	
+	int numVars;
+	double offset;
+	
+	// Open addressing hash table, key i*numVars + j (with i <= j) or -1 for an empty slot
+	long[] keys;
+	double[] values;
+	int size;
+	
+	/**
+	 * Creates an empty QUBO over the given number of variables
+	 **/
+	public QuboBuilder(int numVars) {
+		this(numVars, 8);
+	}
+	
+	/**
+	 * Creates an empty QUBO over the given number of variables, with room for the expected number of coefficients such that
+	 * the hash table does not have to grow while the QUBO is built
+	 **/
+	public QuboBuilder(int numVars, long expectedNonZeros) {
+		
+		int capacity = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(8, 2 * expectedNonZeros)) - 1) << 1;
+		this.numVars = numVars;
+		this.keys = new long[capacity];
+		this.values = new double[capacity];
+		Arrays.fill(this.keys, -1);
+	}
+	
+	/**
+	 * Builds the QUBO that uses unbalanced penalization (QUBO4 in QUBO4_for_MLSP.py), that is,
+	 * H = A*penalty1 + B*penalty2 - C*penalty8 + D*penalty9
+	 **/
+	public static QuboMatrix unbalancedPenalization(MLSP_Instance instance, double A, double B, double C, double D) {
+		
+		MLSP_Metrics.Phase phase = MLSP_Metrics.start("qubo.build");
+		QuboBuilder builder = new QuboBuilder(instance.numTeams * instance.leagueSize, estimateNonZeros(instance));
+		builder.addAssignmentPenalties(instance, A, B);
+		builder.addCapacityGaps(instance, -C);
+		builder.addSquaredCapacityGaps(instance, D);
+		
+		QuboMatrix qubo = builder.build();
+		MLSP_Metrics.count("qubo.variables", qubo.getNumVars());
+		MLSP_Metrics.count("qubo.nonZeros", qubo.getNumNonZeros());
+		phase.stop();
+		return qubo;
+	}
+	
+	/**
+	 * Returns the penalty coefficient that is used for the constraint penalties in the Python scripts, which is the square of the
+	 * largest club size
+	 **/
+	public static double defaultPenalty(MLSP_Instance instance) {
+		
+		int largest = 0;
+		for(int c = 0; c < instance.numClubs; c++) {
+			largest = Math.max(largest, instance.clubSizes[c]);
+		}
+		return (double) largest * largest;
+	}
+	
+	/**
+	 * Returns an upper bound on the number of coefficients of a QUBO with the assignment penalties and a quadratic club penalty,
+	 * which is used to size the hash table in advance
+	 **/
+	static long estimateNonZeros(MLSP_Instance instance) {
+		
+		long leagueSize = instance.leagueSize;
+		long estimate = instance.numTeams * leagueSize * leagueSize;			// Penalty 1 and 2 (a row and a column per variable)
+		for(int c = 0; c < instance.numClubs; c++) {
+			long clubVars = instance.clubSizes[c] * leagueSize;
+			estimate += clubVars * (clubVars + 1) / 2;
+		}
+		return estimate;
+	}
+	
+	/**
+	 * Returns the number of couplers between decision variables in a QUBO with the assignment penalties and the squared capacity
+	 * gaps, which is the same for every encoding, without building it. Penalty 1 couples the teams of a league with the same HAP 
+	 * and penalty 2 the HAPs of a team, and the squared gaps couple every two teams of a club with HAPs that are at home in a common 
+	 * round. Pairs of teams of a club in the same league with the same HAP are coupled by both and are counted once.
+	 **/
+	static long countDecisionCouplers(MLSP_Instance instance) {
+		
+		long leagueSize = instance.leagueSize;
+		long pairsPerGroup = leagueSize * (leagueSize - 1) / 2;
+		long count = instance.numTeams * pairsPerGroup + instance.numLeagues * leagueSize * pairsPerGroup;
+		
+		int[][] overlap = homeOverlap(instance);
+		long hapPairs = 0;				// Ordered pairs of HAPs that are at home in a common round
+		long homeHaps = 0;				// HAPs with at least one home game
+		for(int h1 = 0; h1 < leagueSize; h1++) {
+			for(int h2 = 0; h2 < leagueSize; h2++) {
+				if(overlap[h1][h2] > 0) {
+					hapPairs++;
+				}
+			}
+			if(overlap[h1][h1] > 0) {
+				homeHaps++;
+			}
+		}
+		
+		int[] leagueOfTeam = new int[instance.numTeams];
+		for(int l = 0; l < instance.numLeagues; l++) {
+			for(int t : instance.leagues[l]) {
+				leagueOfTeam[t] = l;
+			}
+		}
+		for(int c = 0; c < instance.numClubs; c++) {
+			long size = instance.clubSizes[c];
+			count += size * (size - 1) / 2 * hapPairs;
+			HashMap<Integer, Integer> teamsPerLeague = new HashMap<Integer, Integer>();
+			for(int t : instance.clubs.get(c)) {
+				int before = teamsPerLeague.merge(leagueOfTeam[t], 1, Integer::sum) - 1;
+				count -= before * homeHaps;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Adds the absolute values of the coefficients between decision variables of the QUBO H = A*penalty1 + B*penalty2 - C*penalty8
+	 * + D*penalty9 to the range {smallest, largest}, without building it (the slack encodings use C = 0). The coefficients are:
+	 * - x[t][h]: -A - B + C*overlap[h][h] + D*(overlap[h][h] - 2*(capacity of the club of t in the rounds where h is at home))
+	 * - x[t][h1]*x[t][h2]: 2*B + 2*D*overlap[h1][h2]
+	 * - x[t1][h]*x[t2][h] for teams of a league: 2*A, plus 2*D*overlap[h][h] if the teams are of the same club
+	 * - x[t1][h1]*x[t2][h2] for other teams of a club: 2*D*overlap[h1][h2]
+	 * Coefficients that are 0 are left out, as in build.
+	 **/
+	static void addDecisionCoefficientRange(MLSP_Instance instance, double A, double B, double C, double D, double[] range) {
+		
+		int leagueSize = instance.leagueSize;
+		int[][] overlap = homeOverlap(instance);
+		int[] teamClub = instance.getTeamClubs();
+		
+		boolean otherClubsInLeague = false;		// Some league has teams of different clubs
+		boolean clubInLeague = false;			// Some club has two teams in the same league
+		for(int l = 0; l < instance.numLeagues; l++) {
+			for(int i = 0; i < leagueSize; i++) {
+				for(int j = i + 1; j < leagueSize; j++) {
+					if(teamClub[instance.leagues[l][i]] == teamClub[instance.leagues[l][j]]) {
+						clubInLeague = true;
+					}
+					else {
+						otherClubsInLeague = true;
+					}
+				}
+			}
+		}
+		for(int c = 0; c < instance.numClubs; c++) {
+			int[] capacity = instance.roundCapacities[c];
+			if(instance.clubSizes[c] == 0) {
+				continue;
+			}
+			for(int h = 0; h < leagueSize; h++) {
+				double capacityAtHome = 0;
+				for(int r = 0; r < instance.numRounds; r++) {
+					capacityAtHome += capacity[r] * instance.U[h][r];
+				}
+				includeCoefficient(range, -A - B + C * overlap[h][h] + D * (overlap[h][h] - 2 * capacityAtHome));
+			}
+		}
+		int[] leagueOfTeam = new int[instance.numTeams];
+		for(int l = 0; l < instance.numLeagues; l++) {
+			for(int t : instance.leagues[l]) {
+				leagueOfTeam[t] = l;
+			}
+		}
+		boolean clubOverLeagues = false;		// Some club has two teams in different leagues
+		for(int c = 0; c < instance.numClubs; c++) {
+			int[] club = instance.clubs.get(c);
+			for(int i = 1; i < club.length && !clubOverLeagues; i++) {
+				clubOverLeagues = leagueOfTeam[club[i]] != leagueOfTeam[club[0]];
+			}
+		}
+		
+		if(otherClubsInLeague) {
+			includeCoefficient(range, 2 * A);
+		}
+		for(int h1 = 0; h1 < leagueSize; h1++) {
+			if(clubInLeague) {
+				includeCoefficient(range, 2 * A + 2 * D * overlap[h1][h1]);
+			}
+			for(int h2 = 0; h2 < leagueSize; h2++) {
+				if(h2 != h1) {
+					includeCoefficient(range, 2 * B + 2 * D * overlap[h1][h2]);
+				}
+				if(clubOverLeagues || (clubInLeague && h2 != h1)) {
+					includeCoefficient(range, 2 * D * overlap[h1][h2]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds the absolute value of a coefficient to the range {smallest, largest}, unless it is 0
+	 **/
+	static void includeCoefficient(double[] range, double value) {
+		
+		if(value != 0) {
+			range[0] = Math.min(range[0], Math.abs(value));
+			range[1] = Math.max(range[1], Math.abs(value));
+		}
+	}
+	
+	/**
+	 * Returns for each pair of HAPs the number of rounds in which both play at home (the diagonal holds the home games of each HAP),
+	 * which is computed once per HAP set by MLSP_ModelTemplate
+	 **/
+	static int[][] homeOverlap(MLSP_Instance instance) {
+		return instance.template.overlap;
+	}
+	
+	/**
+	 * Adds penalty1 (every HAP is used once in every league) with weight A, and penalty2 (every team gets one HAP) with weight B.
+	 * Both penalties have the same coefficients in every league, which are taken from the block of the template and only mapped
+	 * to the variables of the teams of each league.
+	 **/
+	public void addAssignmentPenalties(MLSP_Instance instance, double A, double B) {
+		
+		int leagueSize = instance.leagueSize;
+		MLSP_ModelTemplate template = instance.template;
+		double[] block = new double[template.blockFirst.length];
+		for(int k = 0; k < block.length; k++) {
+			block[k] = A * template.blockPenalty1[k] + B * template.blockPenalty2[k];
+		}
+		
+		int[] vars = new int[leagueSize * leagueSize];
+		for(int l = 0; l < instance.numLeagues; l++) {
+			for(int i = 0; i < leagueSize; i++) {
+				for(int h = 0; h < leagueSize; h++) {
+					vars[i * leagueSize + h] = instance.leagues[l][i] * leagueSize + h;
+				}
+			}
+			for(int k = 0; k < block.length; k++) {
+				add(vars[template.blockFirst[k]], vars[template.blockSecond[k]], block[k]);
+			}
+			addConstant(leagueSize * (A + B));		// (1 - sum)^2 = (sum - 1)^2 has constant 1 for every HAP and every team
+		}
+	}
+	
+	/**
+	 * Adds weight * (constant + sum of coefs[k]*x[vars[k]]) to the QUBO
+	 **/
+	public void addLinearExpression(int[] vars, double[] coefs, double constant, double weight) {
+		
+		this.offset += weight * constant;
+		for(int k = 0; k < vars.length; k++) {
+			add(vars[k], vars[k], weight * coefs[k]);
+		}
+	}
+	
+	/**
+	 * Adds weight * (constant + sum of coefs[k]*x[vars[k]])^2 to the QUBO, using that x*x = x for binary variables
+	 **/
+	public void addSquaredExpression(int[] vars, double[] coefs, double constant, double weight) {
+		
+		this.offset += weight * constant * constant;
+		for(int k = 0; k < vars.length; k++) {
+			add(vars[k], vars[k], weight * (coefs[k] * coefs[k] + 2 * constant * coefs[k]));
+			for(int m = k + 1; m < vars.length; m++) {
+				add(vars[k], vars[m], 2 * weight * coefs[k] * coefs[m]);
+			}
+		}
+	}
+	
+	/**
+	 * Adds weight * h(x) summed over all clubs and rounds, where h(x) = capacity - sum of x[t][h]*U[h][r] over the teams of the club
+	 * (penalty8 of QUBO4 with weight 1)
+	 **/
+	public void addCapacityGaps(MLSP_Instance instance, double weight) {
+		
+		int leagueSize = instance.leagueSize;
+		int[][] overlap = homeOverlap(instance);
+		for(int c = 0; c < instance.numClubs; c++) {
+			for(int r = 0; r < instance.numRounds; r++) {
+				addConstant(weight * instance.roundCapacities[c][r]);
+			}
+			for(int t : instance.clubs.get(c)) {
+				for(int h = 0; h < leagueSize; h++) {
+					add(t * leagueSize + h, t * leagueSize + h, -weight * overlap[h][h]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds weight * h(x)^2 summed over all clubs and rounds (penalty9 of QUBO4 with weight 1). Summed over the rounds, the coefficient 
+	 * of x[t1][h1]*x[t2][h2] only depends on the number of rounds in which both HAPs play at home, so it is taken from the overlap
+	 * matrix instead of expanding the square for every round separately.
+	 **/
+	public void addSquaredCapacityGaps(MLSP_Instance instance, double weight) {
+		
+		int leagueSize = instance.leagueSize;
+		int[][] overlap = homeOverlap(instance);
+		for(int c = 0; c < instance.numClubs; c++) {
+			int[] club = instance.clubs.get(c);
+			int[] cap = instance.roundCapacities[c];
+			
+			// The linear part contains the capacity of every round in which the HAP plays at home
+			double[] capacityAtHome = new double[leagueSize];
+			for(int r = 0; r < instance.numRounds; r++) {
+				addConstant(weight * cap[r] * cap[r]);
+				for(int h = 0; h < leagueSize; h++) {
+					capacityAtHome[h] += cap[r] * instance.U[h][r];
+				}
+			}
+			for(int i = 0; i < club.length; i++) {
+				for(int h1 = 0; h1 < leagueSize; h1++) {
+					int var1 = club[i] * leagueSize + h1;
+					add(var1, var1, weight * (overlap[h1][h1] - 2 * capacityAtHome[h1]));
+					for(int h2 = h1 + 1; h2 < leagueSize; h2++) {
+						add(var1, club[i] * leagueSize + h2, 2 * weight * overlap[h1][h2]);
+					}
+					for(int j = i + 1; j < club.length; j++) {
+						for(int h2 = 0; h2 < leagueSize; h2++) {
+							add(var1, club[j] * leagueSize + h2, 2 * weight * overlap[h1][h2]);
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds a constant to the offset of the QUBO
+	 **/
+	public void addConstant(double constant) {
+		this.offset += constant;
+	}
+	
+	/**
+	 * Adds value to the coefficient of x_i*x_j, which is a linear coefficient if i = j
+	 **/
+	public void add(int i, int j, double value) {
+		
+		if(value == 0) {
+			return;
+		}
+		if(i > j) {
+			int temp = i;
+			i = j;
+			j = temp;
+		}
+		long key = (long) i * this.numVars + j;
+		int slot = find(key);
+		if(this.keys[slot] == -1) {
+			this.keys[slot] = key;
+			this.size++;
+			this.values[slot] = value;
+			if(2 * this.size > this.keys.length) {
+				grow();
+			}
+		}
+		else {
+			this.values[slot] += value;
+		}
+	}
+	
+	/**
+	 * Returns the slot of the key in the hash table, or the empty slot where it should be inserted
+	 **/
+	int find(long key) {
+		
+		int mask = this.keys.length - 1;
+		long hash = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+		while(this.keys[slot] != -1 && this.keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	/**
+	 * Doubles the capacity of the hash table
+	 **/
+	void grow() {
+		
+		long[] oldKeys = this.keys;
+		double[] oldValues = this.values;
+		this.keys = new long[2 * oldKeys.length];
+		this.values = new double[2 * oldKeys.length];
+		Arrays.fill(this.keys, -1);
+		for(int s = 0; s < oldKeys.length; s++) {
+			if(oldKeys[s] != -1) {
+				int slot = find(oldKeys[s]);
+				this.keys[slot] = oldKeys[s];
+				this.values[slot] = oldValues[s];
+			}
+		}
+	}
+	
+	/**
+	 * Converts the accumulated coefficients to a QUBO in CSR format. Coefficients that cancelled out to zero are left out.
+	 **/
+	public QuboMatrix build() {
+		
+		// Sorting the keys orders the entries by row first and column second, which is exactly the CSR order
+		long[] sorted = new long[this.size];
+		int n = 0;
+		for(int s = 0; s < this.keys.length; s++) {
+			if(this.keys[s] != -1 && this.values[s] != 0) {
+				sorted[n++] = this.keys[s];
+			}
+		}
+		sorted = Arrays.copyOf(sorted, n);
+		Arrays.sort(sorted);
+		
+		int[] rowStart = new int[this.numVars + 1];
+		int[] columns = new int[n];
+		double[] coefficients = new double[n];
+		for(int k = 0; k < n; k++) {
+			int i = (int) (sorted[k] / this.numVars);
+			columns[k] = (int) (sorted[k] % this.numVars);
+			coefficients[k] = this.values[find(sorted[k])];
+			rowStart[i + 1]++;
+		}
+		for(int i = 0; i < this.numVars; i++) {
+			rowStart[i + 1] += rowStart[i];
+		}
+		
+		return new QuboMatrix(this.numVars, rowStart, columns, coefficients, this.offset);
+	}
+}
@@ -0,0 +1,121 @@
+import java.util.*;
+
+/* This program defines an encoding of the MLSP as QUBO, such that the four encodings of the Python scripts (QUBO1_for_MLSP.py up to
+ * QUBO4_for_MLSP.py) can be built from Java, compared by size, and sampled by any QuboSampler. In every encoding, variable
+ * t*leagueSize + h is x[t][h], the decision whether team t gets HAP h, and the ancilla (slack) variables of the capacity
+ * constraints, if any, follow after the decision variables. The encodings are:
+ *
+ *   QUBO1	one-hot encoding of the slack of every capacity constraint, capacity + 1 ancillas per club and round
+ *   QUBO2	domain-wall encoding of the slack, capacity ancillas per club and round
+ *   QUBO3	binary encoding of the slack, ceil(log2(capacity + 1)) ancillas per club and round
+ *   QUBO4	unbalanced penalization of the capacity constraints, without ancillas
+ *
+ * The penalty coefficients are those of the Python scripts.
+ */
+
+public interface QuboEncoding {
+	
+	/**
+	 * Returns the name of the encoding (QUBO1 up to QUBO4)
+	 **/
+	String getName();
+	
+	/**
+	 * Returns the number of ancilla variables the encoding adds to the decision variables of the instance
+	 **/
+	long numAncillas(MLSP_Instance instance);
+	
+	/**
+	 * Returns the number of couplers with an ancilla variable, counted without building the QUBO
+	 **/
+	long numAncillaCouplers(MLSP_Instance instance);
+	
+	/**
+	 * Returns the smallest and the largest absolute value of a coefficient of the QUBO, computed without building it
+	 **/
+	double[] coefficientRange(MLSP_Instance instance);
+	
+	/**
+	 * Builds the QUBO of the instance
+	 **/
+	QuboMatrix build(MLSP_Instance instance);
+	
+	/**
+	 * Returns the HAP of every team in a sample of the QUBO, or -1 for a team that does not have exactly one HAP
+	 **/
+	default int[] decode(byte[] sample, MLSP_Instance instance) {
+		
+		int[] hapOfTeam = new int[instance.numTeams];
+		for(int t = 0; t < instance.numTeams; t++) {
+			hapOfTeam[t] = -1;
+			for(int h = 0; h < instance.leagueSize; h++) {
+				if(sample[t * instance.leagueSize + h] == 1) {
+					hapOfTeam[t] = hapOfTeam[t] == -1 ? h : -2;
+				}
+			}
+			hapOfTeam[t] = Math.max(-1, hapOfTeam[t]);
+		}
+		return hapOfTeam;
+	}
+	
+	/**
+	 * Returns the number of variables and couplers and the coefficient range of the QUBO of the instance, computed without building it
+	 **/
+	default QuboSize countSize(MLSP_Instance instance) {
+		
+		long numAncillas = numAncillas(instance);
+		double[] range = coefficientRange(instance);
+		return new QuboSize(getName(), (long) instance.numTeams * instance.leagueSize + numAncillas, numAncillas,
+				QuboBuilder.countDecisionCouplers(instance) + numAncillaCouplers(instance), range[0], range[1]);
+	}
+	
+	/**
+	 * Returns the encoding with the given name (QUBO1, QUBO2, QUBO3 or QUBO4)
+	 **/
+	static QuboEncoding byName(String name) {
+		
+		switch(name.toUpperCase()) {
+		case "QUBO1":
+			return new QuboSlackEncoding("QUBO1", QuboSlackEncoding.ONE_HOT);
+		case "QUBO2":
+			return new QuboSlackEncoding("QUBO2", QuboSlackEncoding.DOMAIN_WALL);
+		case "QUBO3":
+			return new QuboSlackEncoding("QUBO3", QuboSlackEncoding.BINARY);
+		case "QUBO4":
+			return new QuboEncoding() {
+				public String getName() {
+					return "QUBO4";
+				}
+				
+				public long numAncillas(MLSP_Instance instance) {
+					return 0;
+				}
+				
+				public long numAncillaCouplers(MLSP_Instance instance) {
+					return 0;
+				}
+				
+				public double[] coefficientRange(MLSP_Instance instance) {
+					double penalty = QuboBuilder.defaultPenalty(instance);
+					double[] range = {Double.POSITIVE_INFINITY, 0};
+					QuboBuilder.addDecisionCoefficientRange(instance, penalty, penalty, 1, 1, range);
+					return range[0] == Double.POSITIVE_INFINITY ? new double[] {0, 0} : range;
+				}
+				
+				public QuboMatrix build(MLSP_Instance instance) {
+					double penalty = QuboBuilder.defaultPenalty(instance);
+					return QuboBuilder.unbalancedPenalization(instance, penalty, penalty, 1, 1);
+				}
+			};
+		default:
+			throw new IllegalArgumentException("Unknown QUBO encoding: " + name);
+		}
+	}
+	
+	/**
+	 * Returns all four encodings
+	 **/
+	static List<QuboEncoding> all() {
+		return Arrays.asList(byName("QUBO1"), byName("QUBO2"), byName("QUBO3"), byName("QUBO4"));
+	}
+}
@@ -0,0 +1,130 @@
+/* This program stores a QUBO in compressed sparse row (CSR) format. Variables are numbered from 0 to (numVars - 1), and only the
+ * upper triangle is stored: entry (i, i) holds the linear coefficient of variable i and entry (i, j) with i < j holds the coefficient
+ * of x_i*x_j. This is the same information as the dictionary returned by to_qubo in pyqubo, together with its offset.
+ */
+
+public class QuboMatrix {
+	
+	final int numVars;
+	final int[] rowStart;		// Entries of row i are stored from rowStart[i] up to rowStart[i + 1]
+	final int[] columns;
+	final double[] values;
+	final double offset;
+	
+	/**
+	 * Creates a QUBO from CSR arrays, the columns within each row should be sorted in increasing order
+	 **/
+	public QuboMatrix(int numVars, int[] rowStart, int[] columns, double[] values, double offset) {
+		
+		this.numVars = numVars;
+		this.rowStart = rowStart;
+		this.columns = columns;
+		this.values = values;
+		this.offset = offset;
+	}
+	
+	/**
+	 * Returns the number of variables of the QUBO
+	 **/
+	public int getNumVars() {
+		return this.numVars;
+	}
+	
+	/**
+	 * Returns the number of stored (non-zero) coefficients, linear and quadratic together
+	 **/
+	public int getNumNonZeros() {
+		return this.values.length;
+	}
+	
+	/**
+	 * Returns the number of stored quadratic coefficients, that is, the couplers between two different variables
+	 **/
+	public int getNumQuadratic() {
+		
+		int count = 0;
+		for(int i = 0; i < this.numVars; i++) {
+			for(int k = this.rowStart[i]; k < this.rowStart[i + 1]; k++) {
+				if(this.columns[k] != i) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the largest absolute value of a stored coefficient, or 0 if there are none
+	 **/
+	public double getMaxAbsCoefficient() {
+		
+		double max = 0;
+		for(double value : this.values) {
+			max = Math.max(max, Math.abs(value));
+		}
+		return max;
+	}
+	
+	/**
+	 * Returns the smallest absolute value of a stored coefficient, or 0 if there are none
+	 **/
+	public double getMinAbsCoefficient() {
+		
+		double min = Double.POSITIVE_INFINITY;
+		for(double value : this.values) {
+			min = Math.min(min, Math.abs(value));
+		}
+		return this.values.length == 0 ? 0 : min;
+	}
+	
+	/**
+	 * Returns the constant offset of the QUBO
+	 **/
+	public double getOffset() {
+		return this.offset;
+	}
+	
+	/**
+	 * Returns the coefficient of entry (i, j), or zero if it is not stored
+	 **/
+	public double get(int i, int j) {
+		
+		if(i > j) {
+			int temp = i;
+			i = j;
+			j = temp;
+		}
+		int low = this.rowStart[i];
+		int high = this.rowStart[i + 1] - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			if(this.columns[mid] < j) {
+				low = mid + 1;
+			}
+			else if(this.columns[mid] > j) {
+				high = mid - 1;
+			}
+			else {
+				return this.values[mid];
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Returns the energy of a binary assignment of the variables, including the offset
+	 **/
+	public double energy(byte[] assignment) {
+		
+		double energy = this.offset;
+		for(int i = 0; i < this.numVars; i++) {
+			if(assignment[i] == 0) {
+				continue;
+			}
+			for(int k = this.rowStart[i]; k < this.rowStart[i + 1]; k++) {
+				energy += this.values[k] * assignment[this.columns[k]];
+			}
+		}
+		return energy;
+	}
+}
@@ -0,0 +1,27 @@
+import java.util.*;
+
+/* This program defines a sampler for QUBOs, such that every encoding (see QuboEncoding) can be solved by every sampler. A sampler
+ * returns the best sample it found, which assigns 0 or 1 to every variable of the QUBO, or all samples it found, such that the
+ * caller can rank them by another objective than the energy.
+ */
+
+public interface QuboSampler {
+	
+	/**
+	 * Returns the name of the sampler (as SA, QA and HS in the Python scripts), which is the prefix of the name of the solver in
+	 * MLSP_Solver
+	 **/
+	String getName();
+	
+	/**
+	 * Returns the sample with the lowest energy that was found
+	 **/
+	byte[] sample(QuboMatrix qubo);
+	
+	/**
+	 * Returns every sample that was found (as the sample set of a read in the Python scripts), by default only the best one
+	 **/
+	default List<byte[]> sampleAll(QuboMatrix qubo) {
+		return Collections.singletonList(sample(qubo));
+	}
+}
@@ -0,0 +1,146 @@
+import java.util.*;
+
+/* This program stores the size of the QUBO of an instance under one encoding, which is known before the QUBO is sampled: the number
+ * of variables (decision variables and ancillas), the number of non-zero coefficients, and the range of the absolute values of the
+ * coefficients. The number of couplers determines how hard the QUBO is to embed on an annealer, and a large coefficient range makes
+ * the small coefficients drown in the noise of the hardware. The size can also be computed without building the QUBO (see
+ * QuboEncoding.countSize), in which case only the number of non-zeros is unknown. The encodings trade these off: unbalanced
+ * penalization (QUBO4) has no ancillas and the fewest couplers, but its linear penalty widens the coefficient range, while the
+ * one-hot slack (QUBO1) has the most couplers and the narrowest range. The cheapest encoding is the one whose coefficients need the
+ * fewest bits of precision, and then the fewest couplers. It is chosen on the computed sizes once per size class (league size,
+ * number of leagues and number of clubs, as in the names of the instances of the Data Generator) and then reused for all
+ * instances of that class, so only the QUBO of the chosen encoding is ever built.
+ */
+
+public class QuboSize {
+	
+	static final HashMap<String, String> cheapestEncodings = new HashMap<String, String>();
+	
+	final String encoding;
+	final long numVars;
+	final long numAncillas;
+	final long numNonZeros;				// -1 if the QUBO was not built
+	final long numQuadratic;
+	final double minAbsCoefficient;
+	final double maxAbsCoefficient;
+	final long buildNanos;
+	
+	/**
+	 * Stores the size of a QUBO built with the given encoding
+	 **/
+	public QuboSize(String encoding, QuboMatrix qubo, long numAncillas, long buildNanos) {
+		
+		this.encoding = encoding;
+		this.numVars = qubo.getNumVars();
+		this.numAncillas = numAncillas;
+		this.numNonZeros = qubo.getNumNonZeros();
+		this.numQuadratic = qubo.getNumQuadratic();
+		this.minAbsCoefficient = qubo.getMinAbsCoefficient();
+		this.maxAbsCoefficient = qubo.getMaxAbsCoefficient();
+		this.buildNanos = buildNanos;
+	}
+	
+	/**
+	 * Stores the size of a QUBO that was computed without building it
+	 **/
+	public QuboSize(String encoding, long numVars, long numAncillas, long numQuadratic, double minAbsCoefficient,
+			double maxAbsCoefficient) {
+		
+		this.encoding = encoding;
+		this.numVars = numVars;
+		this.numAncillas = numAncillas;
+		this.numNonZeros = -1;
+		this.numQuadratic = numQuadratic;
+		this.minAbsCoefficient = minAbsCoefficient;
+		this.maxAbsCoefficient = maxAbsCoefficient;
+		this.buildNanos = 0;
+	}
+	
+	/**
+	 * Returns true if the QUBO was built, such that its number of non-zeros is known
+	 **/
+	public boolean isBuilt() {
+		return this.numNonZeros >= 0;
+	}
+	
+	/**
+	 * Returns the ratio between the largest and the smallest absolute coefficient
+	 **/
+	public double getCoefficientRange() {
+		return this.minAbsCoefficient == 0 ? 0 : this.maxAbsCoefficient / this.minAbsCoefficient;
+	}
+	
+	/**
+	 * Returns the number of bits needed to tell the smallest coefficient from zero when the largest fills the range of the sampler,
+	 * that is, ceil(log2(coefficient range))
+	 **/
+	public int getPrecisionBits() {
+		
+		double range = getCoefficientRange();
+		return range <= 1 ? 0 : (int) Math.ceil(Math.log(range) / Math.log(2) - 1e-9);
+	}
+	
+	/**
+	 * Returns true if this QUBO is cheaper than the other: its coefficients need fewer bits of precision, or as many bits and it has 
+	 * fewer couplers, or also as many couplers and fewer variables
+	 **/
+	public boolean isCheaperThan(QuboSize other) {
+		
+		if(getPrecisionBits() != other.getPrecisionBits()) {
+			return getPrecisionBits() < other.getPrecisionBits();
+		}
+		if(this.numQuadratic != other.numQuadratic) {
+			return this.numQuadratic < other.numQuadratic;
+		}
+		return this.numVars < other.numVars;
+	}
+	
+	public String toString() {
+		
+		if(!isBuilt()) {
+			return String.format("%s: %d variables (%d ancillas), %d couplers, coefficients %.3g to %.3g, computed without building",
+					this.encoding, this.numVars, this.numAncillas, this.numQuadratic, this.minAbsCoefficient, this.maxAbsCoefficient);
+		}
+		return String.format("%s: %d variables (%d ancillas), %d non-zeros (%d couplers), coefficients %.3g to %.3g, built in %.1f ms",
+				this.encoding, this.numVars, this.numAncillas, this.numNonZeros, this.numQuadratic, this.minAbsCoefficient,
+				this.maxAbsCoefficient, this.buildNanos / 1e6);
+	}
+	
+	/**
+	 * Returns the size of the QUBO of the instance under every encoding, computed without building any of them
+	 **/
+	public static List<QuboSize> compare(MLSP_Instance instance) {
+		
+		ArrayList<QuboSize> sizes = new ArrayList<QuboSize>();
+		for(QuboEncoding encoding : QuboEncoding.all()) {
+			sizes.add(encoding.countSize(instance));
+		}
+		return sizes;
+	}
+	
+	/**
+	 * Returns the cheapest encoding for the size class of the instance. The first instance of a size class computes the size of the
+	 * QUBO under every encoding to compare them, later instances of the same class get the same encoding without computing.
+	 **/
+	public static QuboEncoding cheapest(MLSP_Instance instance) {
+		
+		String sizeClass = instance.leagueSize + "-" + instance.numLeagues + "-" + instance.numClubs;
+		synchronized(cheapestEncodings) {
+			String name = cheapestEncodings.get(sizeClass);
+			if(name != null) {
+				return QuboEncoding.byName(name);
+			}
+		}
+		
+		QuboSize best = null;
+		for(QuboSize size : compare(instance)) {
+			if(best == null || size.isCheaperThan(best)) {
+				best = size;
+			}
+		}
+		synchronized(cheapestEncodings) {
+			cheapestEncodings.put(sizeClass, best.encoding);
+		}
+		return QuboEncoding.byName(best.encoding);
+	}
+}
@@ -0,0 +1,254 @@
+/* This program builds the QUBOs that turn every capacity constraint of the MLSP into an equality with slack variables (QUBO1 up to
+ * QUBO3 of the Python scripts). For club c and round r, with S the number of home games of the club in the round, the penalty is
+ *
+ *   (sum of a[i]*y[i] + S - capacity)^2
+ *
+ * which is 0 if S is at most the capacity and the slack y encodes capacity - S, and (S - capacity)^2 otherwise. The encodings
+ * differ in the slack variables y and their coefficients a:
+ * - One-hot (QUBO1): y[v] for v = 0 up to capacity with a[v] = v, and penalty4 = (1 - sum of y[v])^2 such that one y[v] is set.
+ * - Domain-wall (QUBO2): y[i] for i = 0 up to capacity - 1 with a[i] = 1, and penalty6 = sum of y[i+1] - y[i+1]*y[i] such that the
+ *   set variables come first.
+ * - Binary (QUBO3): y[i] for i = 0 up to ceil(log2(capacity + 1)) - 1 with a[i] = 2^i, which needs no extra penalty.
+ * The part (S - capacity)^2 is the same as penalty9 of unbalanced penalization and is added with QuboBuilder.addSquaredCapacityGaps,
+ * only the terms with slack variables are added per club and round. The ancillas of club c and round r get consecutive indices
+ * after the decision variables, in the order of the clubs and then the rounds.
+ */
+
+public class QuboSlackEncoding implements QuboEncoding {
+	
+	static final int ONE_HOT = 1;
+	static final int DOMAIN_WALL = 2;
+	static final int BINARY = 3;
+	
+	final String name;
+	final int type;
+	
+	/**
+	 * Creates the encoding with the given name and type of slack (ONE_HOT, DOMAIN_WALL or BINARY)
+	 **/
+	public QuboSlackEncoding(String name, int type) {
+		
+		this.name = name;
+		this.type = type;
+	}
+	
+	public String getName() {
+		return this.name;
+	}
+	
+	/**
+	 * Returns the number of slack variables of a constraint with the given capacity
+	 **/
+	int slackSize(int capacity) {
+		
+		switch(this.type) {
+		case ONE_HOT:
+			return capacity + 1;
+		case DOMAIN_WALL:
+			return capacity;
+		default:
+			return 32 - Integer.numberOfLeadingZeros(capacity);		// ceil(log2(capacity + 1))
+		}
+	}
+	
+	/**
+	 * Returns the coefficient of slack variable i in the capacity penalty
+	 **/
+	int slackCoefficient(int i) {
+		
+		switch(this.type) {
+		case ONE_HOT:
+			return i;
+		case DOMAIN_WALL:
+			return 1;
+		default:
+			return 1 << i;
+		}
+	}
+	
+	public long numAncillas(MLSP_Instance instance) {
+		
+		long count = 0;
+		for(int c = 0; c < instance.numClubs; c++) {
+			for(int r = 0; r < instance.numRounds; r++) {
+				count += slackSize(instance.roundCapacities[c][r]);
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Counts the couplers of the slack variables: every two slack variables of a constraint are coupled, and every slack variable 
+	 * with a non-zero coefficient (all but y[0] of the one-hot encoding) is coupled with the HAPs at home of the teams of the club
+	 **/
+	public long numAncillaCouplers(MLSP_Instance instance) {
+		
+		long count = 0;
+		for(int r = 0; r < instance.numRounds; r++) {
+			long homeHaps = 0;
+			for(int h = 0; h < instance.leagueSize; h++) {
+				homeHaps += instance.U[h][r];
+			}
+			for(int c = 0; c < instance.numClubs; c++) {
+				long size = slackSize(instance.roundCapacities[c][r]);
+				long weighted = this.type == ONE_HOT ? size - 1 : size;
+				count += size * (size - 1) / 2 + weighted * instance.clubSizes[c] * homeHaps;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the smallest and largest absolute coefficient, computed from the penalty weights without building the QUBO. With
+	 * P = slackPenalty, a[i] the slack coefficients and C = 1, the coefficients of a constraint with the given capacity are:
+	 * - y[i]: a[i]^2 - 2*capacity*a[i], minus P for one-hot, plus P for domain-wall if i > 0
+	 * - y[i]*y[j]: 2*a[i]*a[j], plus 2*P for one-hot, minus P for domain-wall if j = i + 1
+	 * - y[i]*x[t][h] for the HAPs at home in the round: 2*a[i]
+	 **/
+	public double[] coefficientRange(MLSP_Instance instance) {
+		
+		double penalty = slackPenalty(instance);
+		double[] range = {Double.POSITIVE_INFINITY, 0};
+		QuboBuilder.addDecisionCoefficientRange(instance, penalty, penalty, 0, 1, range);
+		
+		for(int r = 0; r < instance.numRounds; r++) {
+			boolean homeHaps = false;
+			for(int h = 0; h < instance.leagueSize; h++) {
+				homeHaps |= instance.U[h][r] == 1;
+			}
+			for(int c = 0; c < instance.numClubs; c++) {
+				int capacity = instance.roundCapacities[c][r];
+				int size = slackSize(capacity);
+				for(int i = 0; i < size; i++) {
+					double a = slackCoefficient(i);
+					double linear = a * a - 2 * capacity * a;
+					if(this.type == ONE_HOT) {
+						linear -= penalty;
+					}
+					else if(this.type == DOMAIN_WALL && i > 0) {
+						linear += penalty;
+					}
+					QuboBuilder.includeCoefficient(range, linear);
+					for(int j = i + 1; j < size; j++) {
+						double quadratic = 2 * a * slackCoefficient(j);
+						if(this.type == ONE_HOT) {
+							quadratic += 2 * penalty;
+						}
+						else if(this.type == DOMAIN_WALL && j == i + 1) {
+							quadratic -= penalty;
+						}
+						QuboBuilder.includeCoefficient(range, quadratic);
+					}
+					if(homeHaps && instance.clubSizes[c] > 0) {
+						QuboBuilder.includeCoefficient(range, 2 * a);
+					}
+				}
+			}
+		}
+		if(range[0] == Double.POSITIVE_INFINITY) {
+			range[0] = 0;
+		}
+		return range;
+	}
+	
+	/**
+	 * Returns the penalty coefficient of the Python scripts for the assignment and encoding penalties, which is the square of the
+	 * largest difference between the size and the capacity of a club (at least 1)
+	 **/
+	static double slackPenalty(MLSP_Instance instance) {
+		
+		int largest = 1;
+		for(int c = 0; c < instance.numClubs; c++) {
+			for(int r = 0; r < instance.numRounds; r++) {
+				largest = Math.max(largest, instance.clubSizes[c] - instance.roundCapacities[c][r]);
+			}
+		}
+		return (double) largest * largest;
+	}
+	
+	/**
+	 * Builds the QUBO, that is, H = A*penalty1 + B*penalty2 + C*(capacity penalties) + D*(encoding penalties) with C = 1 and the
+	 * other coefficients equal to slackPenalty
+	 **/
+	public QuboMatrix build(MLSP_Instance instance) {
+		
+		MLSP_Metrics.Phase phase = MLSP_Metrics.start("qubo.build");
+		int leagueSize = instance.leagueSize;
+		int numDecisions = instance.numTeams * leagueSize;
+		long numVars = numDecisions + numAncillas(instance);
+		if(numVars > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("The QUBO has too many variables: " + numVars);
+		}
+		double penalty = slackPenalty(instance);
+		double C = 1;
+		
+		QuboBuilder builder = new QuboBuilder((int) numVars, QuboBuilder.estimateNonZeros(instance) + estimateSlackNonZeros(instance));
+		builder.addAssignmentPenalties(instance, penalty, penalty);
+		builder.addSquaredCapacityGaps(instance, C);
+		
+		int next = numDecisions;
+		for(int c = 0; c < instance.numClubs; c++) {
+			int[] club = instance.clubs.get(c);
+			for(int r = 0; r < instance.numRounds; r++) {
+				int capacity = instance.roundCapacities[c][r];
+				int size = slackSize(capacity);
+				
+				// 2*(sum of a[i]*y[i])*(S - capacity) + (sum of a[i]*y[i])^2
+				for(int i = 0; i < size; i++) {
+					double a = slackCoefficient(i);
+					builder.add(next + i, next + i, C * (a * a - 2 * capacity * a));
+					for(int j = i + 1; j < size; j++) {
+						builder.add(next + i, next + j, 2 * C * a * slackCoefficient(j));
+					}
+					for(int t : club) {
+						for(int h = 0; h < leagueSize; h++) {
+							if(instance.U[h][r] == 1) {
+								builder.add(t * leagueSize + h, next + i, 2 * C * a);
+							}
+						}
+					}
+				}
+				
+				if(this.type == ONE_HOT) {
+					// penalty4: (1 - sum of y[v])^2
+					builder.addConstant(penalty);
+					for(int i = 0; i < size; i++) {
+						builder.add(next + i, next + i, -penalty);
+						for(int j = i + 1; j < size; j++) {
+							builder.add(next + i, next + j, 2 * penalty);
+						}
+					}
+				}
+				else if(this.type == DOMAIN_WALL) {
+					// penalty6: sum of y[i+1] - y[i+1]*y[i]
+					for(int i = 0; i + 1 < size; i++) {
+						builder.add(next + i + 1, next + i + 1, penalty);
+						builder.add(next + i, next + i + 1, -penalty);
+					}
+				}
+				next += size;
+			}
+		}
+		
+		QuboMatrix qubo = builder.build();
+		MLSP_Metrics.count("qubo.variables", qubo.getNumVars());
+		MLSP_Metrics.count("qubo.nonZeros", qubo.getNumNonZeros());
+		phase.stop();
+		return qubo;
+	}
+	
+	/**
+	 * Returns an upper bound on the number of coefficients with a slack variable, which is used to size the hash table in advance
+	 **/
+	long estimateSlackNonZeros(MLSP_Instance instance) {
+		
+		long estimate = 0;
+		for(int c = 0; c < instance.numClubs; c++) {
+			for(int r = 0; r < instance.numRounds; r++) {
+				long size = slackSize(instance.roundCapacities[c][r]);
+				estimate += size * (size + 1) / 2 + size * instance.clubSizes[c] * instance.leagueSize;
+			}
+		}
+		return estimate;
+	}
+}
@@ -10,6 +10,7 @@ public class Club {
     private int clubsize;
     private int capacity;
     private ArrayList<Integer> teams;               
+    private TreeMap<Integer, Integer> roundCapacities = new TreeMap<Integer, Integer>();      // Rounds in which the capacity differs
 
     /**
      * Creates an object that stores the club's size, capacity and teams. The teams that 
@@ -50,6 +51,27 @@ public class Club {
         this.capacity = newCapacity;
     }
 
+    /**
+     * Returns the club's capacity in a certain round (numbered from 1), which is the usual capacity unless it was changed for that round
+     */
+    public int getCapacity(int round) {
+        return this.roundCapacities.getOrDefault(round, this.capacity);
+    }
+
+    /**
+     * This method sets the club's capacity in a single round (numbered from 1), for example to 0 if its field is closed in that round
+     */
+    public void setRoundCapacity(int round, int newCapacity) {
+        this.roundCapacities.put(round, newCapacity);
+    }
+
+    /**
+     * Returns the rounds in which the club's capacity differs from its usual capacity, mapped to the capacity in that round
+     */
+    public TreeMap<Integer, Integer> getRoundCapacities() {
+        return this.roundCapacities;
+    }
+
     /**
      * This method adds a certain team to the club and updates the club's size accordingly
      */
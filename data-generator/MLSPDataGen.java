@@ -14,6 +14,9 @@ import java.io.*;
 */
 public class MLSPDataGen{
 
+    // The HAPsets that were read before, by league size
+    static final HashMap<Integer, int[][]> hapSets = new HashMap<Integer, int[][]>();
+
     public static void main(String args[]) {
 
         // This enables the user to input his/her desired values for: number of leagues, league size, number of clubs, and the file to output the data
@@ -126,10 +129,7 @@ public class MLSPDataGen{
                     int rdClubIndex = rd.nextInt(numClubs);
                     if(usedClubs[rdClubIndex] == 0) {
                         // Add team to the club object
-                        Club rdClub = clubs.get(rdClubIndex);
-                        rdClub.addNewTeam(leagues[i][j]);
-                        clubs.remove(rdClubIndex);
-                        clubs.add(rdClubIndex, rdClub);
+                        clubs.get(rdClubIndex).addNewTeam(leagues[i][j]);
                         usedClubs[rdClubIndex] = 1;
                         flag = true;
                     }
@@ -160,31 +160,40 @@ public class MLSPDataGen{
     /**
      * This method creates the parameter U as specified in the MLSP. That is, for each HAPset h, for each round, it
      * contains value 1 if the team assigned to this HAP plays at home, and zero otherwise.
+     * The HAPset of each league size is read from HAPset_for_(league size).txt only once, later calls get a copy of the cached U.
      */
     public static int[][] createParameterU(int leagueSize, int numRounds) throws FileNotFoundException {
 
+        int[][] cached;
+        synchronized(hapSets) {
+            cached = hapSets.get(leagueSize);
+        }
+        if(cached == null) {
+            cached = readParameterU(leagueSize, numRounds);
+            synchronized(hapSets) {
+                hapSets.put(leagueSize, cached);
+            }
+        }
+
+        int[][] U = new int[leagueSize][];
+        for(int i = 0; i < leagueSize; i++) {
+            U[i] = cached[i].clone();
+        }
+        return U;
+    }
+
+    /**
+     * This method reads U for the given league size from its HAPset file
+     */
+    static int[][] readParameterU(int leagueSize, int numRounds) throws FileNotFoundException {
+
         int[][] U = new int[leagueSize][numRounds];
 
-        String filename = null;
-        if(leagueSize == 4) {
-            filename = "HAPset_for_4.txt";
-        } else if(leagueSize == 6) {
-            filename = "HAPset_for_6.txt";
-        } else if(leagueSize == 8) {
-            filename = "HAPset_for_8.txt";
-        } else if(leagueSize == 10) {
-            filename = "HAPset_for_10.txt";
-        } else if(leagueSize == 12) {
-            filename = "HAPset_for_12.txt";
-        } else if(leagueSize == 14) {
-            filename = "HAPset_for_14.txt";
-        } else if(leagueSize == 16) {
-            filename = "HAPset_for_16.txt";
-        } else {
-            System.out.println("Error, too high league size");
-        }
-        
-        File file = new File(filename);
+        File file = new File("HAPset_for_" + leagueSize + ".txt");
+        if(!file.exists()) {
+            System.out.println("Error, there is no HAPset for league size " + leagueSize + " (only even league sizes from 4 up to 16)");
+            throw new FileNotFoundException(file.getName());
+        }
         Scanner input = new Scanner(file);
 
         for(int i = 0; i < leagueSize; i++) {
@@ -240,6 +249,19 @@ public class MLSPDataGen{
             bw.newLine();
         }
 
+        // Rounds in which a club has a different capacity are written after U, one line per club and round
+        boolean first = true;
+        for(int i = 0; i < clubs.size(); i++) {
+            for(Map.Entry<Integer, Integer> entry : clubs.get(i).getRoundCapacities().entrySet()) {
+                if(first) {
+                    bw.newLine();
+                    first = false;
+                }
+                bw.write((i+1) + "\t" + entry.getKey() + "\t" + entry.getValue());
+                bw.newLine();
+            }
+        }
+
         bw.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+import java.io.*;
+import java.util.*;
+
+/* This program generates (large) instances for the multi-league scheduling problem without user interaction, under the same 
+ * assumptions as MLSPDataGen. The output has the same format (see README.txt in the data folder). In contrast to MLSPDataGen:
+ * - All randomness comes from one explicit seed, so the same arguments always give the same instance.
+ * - Teams are divided over leagues by a single shuffle of all teams, and for every league its clubs are drawn by a partial shuffle
+ *   of the clubs, so no random choice is ever rejected and the generation takes linear time.
+ * - Only primitive arrays are kept in memory (the club of every team and the teams grouped per club), and the clubs and leagues
+ *   are written straight to the file.
+ * 
+ * Usage: java MLSPStreamGen <league size> <number of leagues> <number of clubs> <version> <seed> [output folder] [closed fraction]
+ * The file is named (league size)-(number of leagues)-(number of clubs)-(version).txt, and is written to ../data by default.
+ * With a closed fraction p > 0, every club is closed (capacity 0) in each round with probability p.
+ */
+public class MLSPStreamGen {
+
+    public static void main(String args[]) {
+
+        if(args.length < 5) {
+            System.out.println("Usage: java MLSPStreamGen <league size> <number of leagues> <number of clubs> <version> <seed> [output folder] [closed fraction]");
+            return;
+        }
+
+        int leagueSize = Integer.parseInt(args[0]);
+        int numLeagues = Integer.parseInt(args[1]);
+        int numClubs = Integer.parseInt(args[2]);
+        String version = args[3];
+        long seed = Long.parseLong(args[4]);
+        String folder = args.length > 5 ? args[5] : "../data";
+        double closedFraction = args.length > 6 ? Double.parseDouble(args[6]) : 0;
+
+        File file = new File(folder, leagueSize + "-" + numLeagues + "-" + numClubs + "-" + version + ".txt");
+        try {
+            generate(file, leagueSize, numLeagues, numClubs, seed, closedFraction);
+            System.out.println("Instance written to " + file);
+        }
+        catch(IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+        catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * This method generates an instance with the given dimensions and seed, and writes it to the file. Each club is closed in each
+     * round with probability closedFraction.
+     */
+    public static void generate(File file, int leagueSize, int numLeagues, int numClubs, long seed, double closedFraction) throws IOException {
+
+        if(numClubs < leagueSize) {
+            throw new IllegalArgumentException("Error, there should be at least as many clubs as teams per league.");
+        }
+
+        int numTeams = leagueSize*numLeagues;
+        int numRounds = 2*(leagueSize - 1);
+        Random rd = new Random(seed);
+
+        // The HAPset is read first, such that an unsupported league size is noticed before anything is written
+        int[][] U = MLSPDataGen.createParameterU(leagueSize, numRounds);
+
+        // Shuffle all teams (numbered from 1 to numTeams), league i consists of positions i*leagueSize up to (i+1)*leagueSize of the shuffle
+        int[] teams = new int[numTeams];
+        for(int t = 0; t < numTeams; t++) {
+            teams[t] = t + 1;
+        }
+        shuffle(teams, numTeams, rd);
+
+        // For every league, its teams get distinct clubs from the first leagueSize positions of a partial shuffle of the clubs
+        int[] clubOfTeam = new int[numTeams + 1];
+        int[] clubSizes = new int[numClubs];
+        int[] clubOrder = new int[numClubs];
+        for(int c = 0; c < numClubs; c++) {
+            clubOrder[c] = c;
+        }
+        for(int i = 0; i < numLeagues; i++) {
+            shuffle(clubOrder, leagueSize, rd);
+            for(int j = 0; j < leagueSize; j++) {
+                int team = teams[i*leagueSize + j];
+                clubOfTeam[team] = clubOrder[j];
+                clubSizes[clubOrder[j]]++;
+            }
+        }
+
+        // Group the teams per club in increasing order of team number (a counting sort on the club)
+        int[] clubStart = new int[numClubs + 1];
+        for(int c = 0; c < numClubs; c++) {
+            clubStart[c + 1] = clubStart[c] + clubSizes[c];
+        }
+        int[] clubTeams = new int[numTeams];
+        int[] next = Arrays.copyOf(clubStart, numClubs);
+        for(int team = 1; team <= numTeams; team++) {
+            clubTeams[next[clubOfTeam[team]]++] = team;
+        }
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(file), 1 << 16);
+
+        bw.write(numTeams + "\t" + numLeagues + "\t" + numClubs + "\t" + leagueSize);
+        bw.newLine();
+        bw.newLine();
+
+        // The club capacity is chosen in the same range as in MLSPDataGen, from Li et al. (2022)
+        for(int c = 0; c < numClubs; c++) {
+            int size = clubSizes[c];
+            if(size == 0) {
+                System.out.println("Error, club " + (c + 1) + " is empty, try another seed or reduce number of clubs.");
+            }
+            int upper = Math.min(size/2 + 2, size);
+            int lower = Math.max(size/2 - 2, 1);
+            int capacity = upper >= lower ? rd.nextInt(upper - lower + 1) + lower : lower;
+            bw.write(size + "\t" + capacity + "\t");
+            for(int k = clubStart[c]; k < clubStart[c + 1]; k++) {
+                bw.write(clubTeams[k] + "\t");
+            }
+            bw.newLine();
+        }
+
+        bw.newLine();
+        for(int i = 0; i < numLeagues; i++) {
+            bw.write((i+1) + "\t");
+            for(int j = 0; j < leagueSize; j++) {
+                bw.write(teams[i*leagueSize + j] + "\t");
+            }
+            bw.newLine();
+        }
+        bw.newLine();
+
+        for(int i = 0; i < leagueSize; i++) {
+            for(int j = 0; j < numRounds; j++) {
+                bw.write(U[i][j] + "\t");
+            }
+            bw.newLine();
+        }
+
+        // Closed rounds are written after U as (club number) (round number) (capacity 0)
+        if(closedFraction > 0) {
+            bw.newLine();
+            for(int c = 0; c < numClubs; c++) {
+                for(int r = 0; r < numRounds; r++) {
+                    if(rd.nextDouble() < closedFraction) {
+                        bw.write((c + 1) + "\t" + (r + 1) + "\t0");
+                        bw.newLine();
+                    }
+                }
+            }
+        }
+
+        bw.close();
+    }
+
+    /**
+     * This method moves a uniformly random selection of count elements to the front of the array (in random order), by performing
+     * the first count steps of a Fisher-Yates shuffle
+     */
+    static void shuffle(int[] array, int count, Random rd) {
+
+        for(int i = 0; i < count; i++) {
+            int j = i + rd.nextInt(array.length - i);
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package mlsp.jmh;
+
+import ilog.cplex.*;
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/* This program contains JMH benchmarks for the hot paths of the MLSP solvers, over a range of instances from the data folder:
+ * - parsing an instance from its text file (the MLSP_Instance constructor),
+ * - computing the violations of every club in every round for a given assignment (the z values written by outputSolution),
+ * - building the MILP of solveMILPforMLSP up to the point where cplex.solve() is called,
+ * - one sweep of the simulated annealing heuristic,
+ * - evaluating a population of POPULATION random assignments from scratch, once with the batched path of MLSP_ViolationKernel
+ *   (as used to score the QUBO samples) and once assignment by assignment with MLSP_BitModel.
+ * 
+ * JMH does not accept benchmarks in the default package, while the solver classes are in the default package and can therefore not 
+ * be imported. The solver classes are loaded by name in the setup, and called through method handles, which the JIT compiles to 
+ * direct calls. See README.md for how to compile and run the benchmarks.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MLSPBenchmarks {
+	
+	@Param({"4-3-5-A.txt", "8-75-80-A.txt", "12-200-250-A.txt", "16-270-300-A.txt"})
+	public String filename;
+	
+	static final MethodHandle NEW_INSTANCE;
+	static final MethodHandle STORE_ASSIGNMENT;
+	static final MethodHandle NUM_VIOLATIONS;
+	static final MethodHandle BUILD_MILP;
+	static final MethodHandle NEW_ANNEALER;
+	static final MethodHandle GET_ASSIGNMENT;
+	static final MethodHandle SWEEP;
+	static final MethodHandle VIOLATIONS;
+	static final MethodHandle EVALUATE_ASSIGNMENTS;
+	static final MethodHandle GET_BIT_MODEL;
+	static final MethodHandle NEW_HOME_COUNTS;
+	static final MethodHandle BIT_MODEL_EVALUATE;
+	
+	static final int POPULATION = 64;
+	
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			Class<?> instanceClass = Class.forName("MLSP_Instance");
+			Class<?> annealerClass = Class.forName("MLSP_Annealer");
+			Class<?> bitModelClass = Class.forName("MLSP_BitModel");
+			NEW_INSTANCE = lookup.findConstructor(instanceClass, MethodType.methodType(void.class, String.class))
+					.asType(MethodType.methodType(Object.class, String.class));
+			STORE_ASSIGNMENT = lookup.findVirtual(instanceClass, "storeAssignment", MethodType.methodType(void.class, int[].class))
+					.asType(MethodType.methodType(void.class, Object.class, int[].class));
+			NUM_VIOLATIONS = lookup.findVirtual(instanceClass, "getNumViolations", MethodType.methodType(double.class))
+					.asType(MethodType.methodType(double.class, Object.class));
+			BUILD_MILP = lookup.findVirtual(instanceClass, "buildMILPforMLSP", MethodType.methodType(void.class, IloCplex.class))
+					.asType(MethodType.methodType(void.class, Object.class, IloCplex.class));
+			NEW_ANNEALER = lookup.findConstructor(annealerClass, MethodType.methodType(void.class, instanceClass, long.class))
+					.asType(MethodType.methodType(Object.class, Object.class, long.class));
+			GET_ASSIGNMENT = lookup.findVirtual(annealerClass, "getBestAssignment", MethodType.methodType(int[].class))
+					.asType(MethodType.methodType(int[].class, Object.class));
+			SWEEP = lookup.findVirtual(annealerClass, "sweep", MethodType.methodType(void.class, double.class))
+					.asType(MethodType.methodType(void.class, Object.class, double.class));
+			VIOLATIONS = lookup.findVirtual(annealerClass, "getViolations", MethodType.methodType(int.class))
+					.asType(MethodType.methodType(int.class, Object.class));
+			EVALUATE_ASSIGNMENTS = lookup.findVirtual(instanceClass, "evaluateAssignments", MethodType.methodType(int[].class, int[][].class))
+					.asType(MethodType.methodType(int[].class, Object.class, int[][].class));
+			GET_BIT_MODEL = lookup.findVirtual(instanceClass, "getBitModel", MethodType.methodType(bitModelClass))
+					.asType(MethodType.methodType(Object.class, Object.class));
+			NEW_HOME_COUNTS = lookup.findVirtual(bitModelClass, "newHomeCounts", MethodType.methodType(int[].class))
+					.asType(MethodType.methodType(int[].class, Object.class));
+			BIT_MODEL_EVALUATE = lookup.findVirtual(bitModelClass, "evaluate", MethodType.methodType(int.class, int[].class, int[].class))
+					.asType(MethodType.methodType(int.class, Object.class, int[].class, int[].class));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
+	Object instance;
+	Object annealer;
+	int[] assignment;
+	int[][] population;
+	Object bitModel;
+	int[] homeCount;
+	
+	/**
+	 * Parses the instance once, and creates a random assignment, an annealer and a population of random assignments that are 
+	 * reused by the benchmarks
+	 **/
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		
+		this.instance = (Object) NEW_INSTANCE.invokeExact(this.filename);
+		this.annealer = (Object) NEW_ANNEALER.invokeExact(this.instance, 42L);
+		this.assignment = (int[]) GET_ASSIGNMENT.invokeExact(this.annealer);
+		
+		this.population = new int[POPULATION][];
+		for(int i = 0; i < POPULATION; i++) {
+			Object random = (Object) NEW_ANNEALER.invokeExact(this.instance, 43L + i);
+			this.population[i] = (int[]) GET_ASSIGNMENT.invokeExact(random);
+		}
+		this.bitModel = (Object) GET_BIT_MODEL.invokeExact(this.instance);
+		this.homeCount = (int[]) NEW_HOME_COUNTS.invokeExact(this.bitModel);
+	}
+	
+	/**
+	 * Parses the instance from its text file
+	 **/
+	@Benchmark
+	public Object parseInstance() throws Throwable {
+		return (Object) NEW_INSTANCE.invokeExact(this.filename);
+	}
+	
+	/**
+	 * Computes x, z and the total number of violations for a fixed assignment
+	 **/
+	@Benchmark
+	public double evaluateViolations() throws Throwable {
+		
+		STORE_ASSIGNMENT.invokeExact(this.instance, this.assignment);
+		return (double) NUM_VIOLATIONS.invokeExact(this.instance);
+	}
+	
+	/**
+	 * Builds the MILP in a new CPLEX model, without solving it
+	 **/
+	@Benchmark
+	public void buildMILP(Blackhole blackhole) throws Throwable {
+		
+		IloCplex cplex = new IloCplex();
+		try {
+			BUILD_MILP.invokeExact(this.instance, cplex);
+			blackhole.consume(cplex.getNrows());
+		}
+		finally {
+			cplex.end();
+		}
+	}
+	
+	/**
+	 * Performs one sweep of the annealer at a low temperature
+	 **/
+	@Benchmark
+	public int annealerSweep() throws Throwable {
+		
+		SWEEP.invokeExact(this.annealer, 0.5);
+		return (int) VIOLATIONS.invokeExact(this.annealer);
+	}
+	
+	/**
+	 * Computes the total number of violations of every assignment of the population with the batched path of MLSP_ViolationKernel
+	 **/
+	@Benchmark
+	public int[] evaluatePopulationBatched() throws Throwable {
+		return (int[]) EVALUATE_ASSIGNMENTS.invokeExact(this.instance, this.population);
+	}
+	
+	/**
+	 * Computes the total number of violations of every assignment of the population one by one with MLSP_BitModel
+	 **/
+	@Benchmark
+	public void evaluatePopulationEach(Blackhole blackhole) throws Throwable {
+		
+		for(int[] hapOfTeam : this.population) {
+			blackhole.consume((int) BIT_MODEL_EVALUATE.invokeExact(this.bitModel, hapOfTeam, this.homeCount));
+		}
+	}
+}
@@ -77,6 +77,11 @@ for i in range(league_size):
         index += 1
     U.append(U_row)
 
+# The file may end with per-round capacities (club, round, capacity), which this QUBO does not model, since it uses one capacity
+# per club in every round. Such files are refused, so the violations reported here are comparable to those of the Java solvers.
+if index < len(data):
+    raise SystemExit(f"{filename} has per-round capacities, which this program does not support; use the Java solvers instead")
+
 # This for loop already calculates the penalty value for lambda 1 and 2
 penalty_value = 0
 for c in range(num_clubs):